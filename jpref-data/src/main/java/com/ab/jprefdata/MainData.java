@@ -42,6 +42,7 @@ public class MainData {
         File f = new File(OUTPUT_DIR_NAME);
         f.mkdirs();
         save();
+        new SuitTricksData().run(OUTPUT_DIR_NAME);
     }
 
     private void complete() {
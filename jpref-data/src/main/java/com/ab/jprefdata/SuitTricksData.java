@@ -0,0 +1,55 @@
+package com.ab.jprefdata;
+
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.cards.SuitTricks;
+import static com.ab.util.Logger.println;
+import static com.ab.util.Logger.printf;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/*
+Declarer tricks in one suit for every layout between declarer, left and right,
+solved exhaustively, see SuitTricks.
+*/
+
+public class SuitTricksData {
+    public static final boolean DEBUG_LOG = false;
+
+    void run(String outputDirName) {
+        File f = new File(outputDirName, SuitTricks.RESOURCE_NAME);
+        printf("saveSuitTricks to %s\n", f.getAbsolutePath());
+        int count = 0;
+        try (PrintStream pr = new PrintStream(f, StandardCharsets.UTF_8.name())) {
+            pr.println("# owners from the highest card: 0 - declarer, 1 - left, 2 - right");
+            pr.println("# guaranteed and max tricks with declarer, left, right on lead; declarer's best lead");
+            int[] hands = new int[SuitTricks.NOP];
+            // every layout with the gone cards removed is the lowest cards of the suit
+            for (int size = 1; size <= CardSet.SUIT_LIST_LENGTH; ++size) {
+                int layouts = 1;
+                for (int i = 0; i < size; ++i) {
+                    layouts *= SuitTricks.NOP;
+                }
+                for (int layout = 0; layout < layouts; ++layout) {
+                    hands[0] = hands[1] = hands[2] = 0;
+                    int owners = layout;
+                    for (int i = 0; i < size; ++i) {
+                        hands[owners % SuitTricks.NOP] |= 1 << i;
+                        owners /= SuitTricks.NOP;
+                    }
+                    String line = SuitTricks.toLine(hands);
+                    if (line == null) {
+                        continue;
+                    }
+                    println(DEBUG_LOG, line);
+                    pr.println(line);
+                    ++count;
+                }
+            }
+        } catch (Exception e) {
+            println("ERROR: " + e.getMessage());
+        }
+        printf("%d layouts\n", count);
+        println("done");
+    }
+}
@@ -25,8 +25,6 @@ package com.ab.jpref.cards;
 
 import com.ab.jpref.config.Config;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 public class Card implements Comparable<Card>, Config.Queueable {
@@ -184,24 +182,24 @@ public class Card implements Comparable<Card>, Config.Queueable {
     private final Rank rank;
 
     private static final Card[] cards = new Card[TOTAL_SUITS * TOTAL_RANKS];
-    private static final Map<Integer, Card> cardMap = new HashMap<>();
 
     static {
         int i = -1;
-        int m = 1;
         for (Suit suit : Suit.values()) {
             for (int j = 0; j < TOTAL_RANKS; ++j) {
                 Rank rank = Rank.values()[j + 1];
                 Card card = new Card(suit, rank);
-                cardMap.put(m, card);
-                m <<= 1;
                 cards[++i] = card;
             }
         }
     }
 
+    // bit is CardSet bit of the card, cards[] are in the same order
     public static Card get(int bit) {
-        return cardMap.get(bit);
+        if (bit == 0 || (bit & (bit - 1)) != 0) {
+            return null;
+        }
+        return cards[Integer.numberOfTrailingZeros(bit)];
     }
 
     Card(Suit suit, Rank rank) {
@@ -70,6 +70,26 @@ public class CardSet {
         }
     }
 
+    // maxUnwantedTricks() for one suit, filled on the first use of each layout.
+    // Index: elderHand << 16 | 2 bits for each rank: 0 - gone, 1 - mine, 2 - left, 3 - right
+    // value: UNWANTED_KNOWN | good << 12 | cardsLeft << 8 | maxMeStart << 4 | maxTheyStart
+    private static final int[] unwantedTricks = new int[3 << (2 * SUIT_LIST_LENGTH)];
+    private static final int UNWANTED_KNOWN = 1 << 13;
+    // SPREAD[bits]: rank bits moved to every 2nd bit
+    static final int[] SPREAD = new int[1 << SUIT_LIST_LENGTH];
+
+    static {
+        for (int bits = 0; bits < SPREAD.length; ++bits) {
+            int res = 0;
+            for (int i = 0; i < SUIT_LIST_LENGTH; ++i) {
+                if ((bits & (1 << i)) != 0) {
+                    res |= 1 << (2 * i);
+                }
+            }
+            SPREAD[bits] = res;
+        }
+    }
+
     public static final Random random = new Random();
 
     protected int bitmap;
@@ -572,7 +592,48 @@ public class CardSet {
         return cardLists;
     }
 
+    // suit layout index for unwantedTricks,
+    // -1 when the cards are not from the same suit or mine are in the other hands.
+    // The cards that left and right have both are right's only, as in simplifyHands()
+    private int suitLayout(CardSet leftSuit, CardSet rightSuit) {
+        int shift = suitOffset(this.first().getSuit());
+        int right = rightSuit.bitmap;
+        int left = leftSuit.bitmap & ~right;
+        if (((this.bitmap | left | right) & ~(SUIT_LIST_MASK << shift)) != 0 ||
+                (this.bitmap & (left | right)) != 0) {
+            return -1;
+        }
+        return SPREAD[this.bitmap >>> shift] | SPREAD[left >>> shift] << 1 | 3 * SPREAD[right >>> shift];
+    }
+
     public ListData maxUnwantedTricks(CardSet leftSuit, CardSet rightSuit, int elderHand) {
+        if (this.isEmpty() || elderHand < 0 || elderHand > 2) {
+            return computeUnwantedTricks(leftSuit, rightSuit, elderHand);
+        }
+        int layout = suitLayout(leftSuit, rightSuit);
+        if (layout < 0) {
+            return computeUnwantedTricks(leftSuit, rightSuit, elderHand);
+        }
+        int index = elderHand << (2 * SUIT_LIST_LENGTH) | layout;
+        int value = unwantedTricks[index];
+        if (value == 0) {
+            // the same for all suits, races write the same value
+            ListData listData = computeUnwantedTricks(leftSuit, rightSuit, elderHand);
+            value = UNWANTED_KNOWN | (listData.good ? 1 << 12 : 0) |
+                listData.cardsLeft << 8 | listData.maxMeStart << 4 | listData.maxTheyStart;
+            unwantedTricks[index] = value;
+            return listData;
+        }
+        ListData listData = new ListData(this);
+        listData.suit = this.first().getSuit();
+        listData.maxTheyStart = value & 0x0f;
+        listData.maxMeStart = (value >>> 4) & 0x0f;
+        listData.cardsLeft = (value >>> 8) & 0x0f;
+        listData.good = (value & (1 << 12)) != 0;
+        return listData;
+    }
+
+    ListData computeUnwantedTricks(CardSet leftSuit, CardSet rightSuit, int elderHand) {
         ListData listData = new ListData(this);
         listData.cardsLeft = 0;
         if (this.isEmpty()) {
@@ -0,0 +1,133 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Deals the cards nobody has seen between the hands, every hand gets its size
+ * and only the cards it may have, e.g. not the suits it showed void.
+ * The cards that only one hand may have go first, then the rest in random order,
+ * each to one of the hands that may have it, chosen by the room left in them.
+ * Without constraints every deal is equally likely, with them it is close.
+ * Bitmaps only, immutable, one dealer can be used by several threads.
+ */
+
+package com.ab.jpref.cards;
+
+import java.util.SplittableRandom;
+
+public class Dealer {
+    public static int MAX_ATTEMPTS = 100;   // a random order may leave a card no room
+
+    private final int[] allowed;
+    private final int[] sizes;
+    private final int[] forced;     // the cards that only that hand may have
+    private final int[] free;       // the rest, by bit
+
+    // allowed[i] - the cards hand i may have, all of them are dealt
+    public Dealer(CardSet[] allowed, int[] sizes) {
+        int n = allowed.length;
+        if (sizes.length != n) {
+            throw new RuntimeException(String.format("%d hands, %d sizes", n, sizes.length));
+        }
+        this.allowed = new int[n];
+        this.sizes = sizes.clone();
+        this.forced = new int[n];
+        int pool = 0;
+        int total = 0;
+        for (int i = 0; i < n; ++i) {
+            this.allowed[i] = allowed[i].getBitmap();
+            pool |= this.allowed[i];
+            total += sizes[i];
+        }
+        if (Integer.bitCount(pool) != total) {
+            throw new RuntimeException(String.format("%d cards for %d places", Integer.bitCount(pool), total));
+        }
+        int rest = pool;
+        for (int i = 0; i < n; ++i) {
+            int others = 0;
+            for (int j = 0; j < n; ++j) {
+                if (j != i) {
+                    others |= this.allowed[j];
+                }
+            }
+            forced[i] = this.allowed[i] & ~others;
+            if (Integer.bitCount(forced[i]) > sizes[i]) {
+                throw new RuntimeException(String.format("hand %d must have %s, size %d",
+                    i, new CardSet(forced[i]), sizes[i]));
+            }
+            rest &= ~forced[i];
+        }
+        free = new int[Integer.bitCount(rest)];
+        int k = 0;
+        int bit = 0;
+        while ((bit = CardSet.next(rest, bit)) != 0) {
+            free[k++] = bit;
+        }
+    }
+
+    // null if no deal found in MAX_ATTEMPTS
+    public CardSet[] deal(SplittableRandom random) {
+        int n = sizes.length;
+        int[] hands = new int[n];
+        int[] room = new int[n];
+        int[] cards = free.clone();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            for (int i = 0; i < n; ++i) {
+                hands[i] = forced[i];
+                room[i] = sizes[i] - Integer.bitCount(forced[i]);
+            }
+            boolean ok = true;
+            for (int k = cards.length - 1; k >= 0; --k) {
+                // Fisher-Yates on the fly
+                int r = random.nextInt(k + 1);
+                int bit = cards[r];
+                cards[r] = cards[k];
+                cards[k] = bit;
+                int total = 0;
+                for (int i = 0; i < n; ++i) {
+                    if ((allowed[i] & bit) != 0) {
+                        total += room[i];
+                    }
+                }
+                if (total == 0) {
+                    ok = false;
+                    break;
+                }
+                int pick = random.nextInt(total);
+                for (int i = 0; i < n; ++i) {
+                    if ((allowed[i] & bit) == 0) {
+                        continue;
+                    }
+                    pick -= room[i];
+                    if (pick < 0) {
+                        hands[i] |= bit;
+                        --room[i];
+                        break;
+                    }
+                }
+            }
+            if (ok) {
+                CardSet[] res = new CardSet[n];
+                for (int i = 0; i < n; ++i) {
+                    res[i] = new CardSet(hands[i]);
+                }
+                return res;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,280 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Declarer tricks in one suit without trumps, for every layout of the suit
+ * between declarer (0), left (1) and right (2), with each of them on lead.
+ * guaranteed: declarer plays for tricks, defenders against, max: everybody plays for declarer.
+ * A defender on lead without cards in the suit passes the lead to the partner.
+ * The table is generated by jpref-data SuitTricksData and loaded from jpref/suit-tricks
+ */
+
+package com.ab.jpref.cards;
+
+import com.ab.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.ab.jpref.cards.CardSet.SUIT_LIST_LENGTH;
+import static com.ab.jpref.cards.CardSet.SUIT_LIST_MASK;
+
+public class SuitTricks {
+    private static final boolean DEBUG_LOG = false;
+    public static final String RESOURCE_NAME = "suit-tricks";
+    public static final int DECLARER = 0;
+    public static final int NOP = 3;
+
+    // Index: 2 bits for each rank: 0 - gone, 1 - declarer, 2 - left, 3 - right
+    // value: bestLead << 24 | for each leader (max << 4 | guaranteed) << (8 * leader)
+    // bestLead: declarer's rank offset + 1, 0 when declarer has no guaranteed tricks on lead
+    private final int[] table = new int[1 << (2 * SUIT_LIST_LENGTH)];
+
+    private static class Holder {
+        static final SuitTricks instance = new SuitTricks(RESOURCE_NAME);
+    }
+
+    public static SuitTricks getInstance() {
+        return Holder.instance;
+    }
+
+    private SuitTricks(String resourceName) {
+        Map<String, Integer> values = load(resourceName);
+        int[] hands = new int[NOP];
+        for (int layout = 0; layout < table.length; ++layout) {
+            for (int i = 0; i < NOP; ++i) {
+                hands[i] = 0;
+            }
+            for (int j = 0; j < SUIT_LIST_LENGTH; ++j) {
+                int owner = (layout >>> (2 * j)) & 3;
+                if (owner != 0) {
+                    hands[owner - 1] |= 1 << j;
+                }
+            }
+            Integer value = values.get(toKey(hands));
+            if (value == null) {
+                continue;
+            }
+            int bestLead = value >>> 24;
+            if (bestLead != 0) {
+                // key position -> rank offset
+                int bit = Integer.highestOneBit(hands[0] | hands[1] | hands[2]);
+                for (int k = 1; k < bestLead; ++k) {
+                    bit = Integer.highestOneBit((hands[0] | hands[1] | hands[2]) & (bit - 1));
+                }
+                bestLead = Integer.numberOfTrailingZeros(bit) + 1;
+            }
+            table[layout] = bestLead << 24 | value & 0xffffff;
+        }
+    }
+
+    // lines: key value value ..., see toLine()
+    private static Map<String, Integer> load(String resourceName) {
+        Map<String, Integer> values = new HashMap<>();
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        try (InputStream is = classloader.getResourceAsStream("jpref/" + resourceName);
+             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Logger.println(DEBUG_LOG, line);
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                int value = Integer.parseInt(parts[NOP * 2 + 1]) << 24;
+                for (int i = 0; i < NOP; ++i) {
+                    int guaranteed = Integer.parseInt(parts[2 * i + 1]);
+                    int max = Integer.parseInt(parts[2 * i + 2]);
+                    value |= (max << 4 | guaranteed) << (8 * i);
+                }
+                values.put(parts[0], value);
+            }
+        } catch (Exception e) {
+            Logger.println(e.getMessage());
+        }
+        return values;
+    }
+
+    // owners of the cards from the highest down, the gone cards skipped, e.g. "0120"
+    public static String toKey(int[] hands) {
+        StringBuilder sb = new StringBuilder();
+        for (int bit = 1 << (SUIT_LIST_LENGTH - 1); bit != 0; bit >>>= 1) {
+            for (int i = 0; i < NOP; ++i) {
+                if ((hands[i] & bit) != 0) {
+                    sb.append(i);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // key guaranteed max for leaders 0, 1 and 2, best lead key position + 1
+    // null if declarer has no tricks at all
+    public static String toLine(int[] hands) {
+        StringBuilder sb = new StringBuilder(toKey(hands));
+        boolean any = false;
+        for (int leader = 0; leader < NOP; ++leader) {
+            int guaranteed = solve(hands, leader, false);
+            int max = solve(hands, leader, true);
+            sb.append(" ").append(guaranteed).append(" ").append(max);
+            any |= max > 0;
+        }
+        if (!any) {
+            return null;
+        }
+        int bestLead = 0;
+        int bit = bestLead(hands);
+        if (bit != 0) {
+            int all = hands[0] | hands[1] | hands[2];
+            bestLead = Integer.bitCount(all & -bit);
+        }
+        return sb.append(" ").append(bestLead).toString();
+    }
+
+    // exhaustive single suit play, hands are rank bitmaps, modified and restored
+    public static int solve(int[] hands, int leader, boolean max) {
+        if (hands[leader] == 0) {
+            if (leader == DECLARER) {
+                return 0;
+            }
+            int partner = NOP - leader;
+            if (hands[partner] == 0) {
+                // all declarer's cards are winners
+                return Integer.bitCount(hands[DECLARER]);
+            }
+            leader = partner;
+        }
+        return play(hands, leader, 0, 0, DECLARER, max);
+    }
+
+    // the highest card of declarer's leads that take guaranteed tricks, 0 if there are none
+    public static int bestLead(int[] hands) {
+        int res = 0;
+        int best = 0;
+        int cards = hands[DECLARER];
+        while (cards != 0) {
+            int bit = Integer.highestOneBit(cards);
+            cards &= ~bit;
+            hands[DECLARER] &= ~bit;
+            int tricks = play(hands, DECLARER, 1, bit, DECLARER, false);
+            hands[DECLARER] |= bit;
+            if (res < tricks) {
+                res = tricks;
+                best = bit;
+            }
+        }
+        return best;
+    }
+
+    // played cards in the current trick, top is the highest of them and winner is its owner
+    private static int play(int[] hands, int leader, int played, int top, int winner, boolean max) {
+        if (played == NOP) {
+            return (winner == DECLARER ? 1 : 0) + solve(hands, winner, max);
+        }
+        int hand = (leader + played) % NOP;
+        int cards = hands[hand];
+        if (cards == 0) {
+            return play(hands, leader, played + 1, top, winner, max);
+        }
+        boolean forDeclarer = max || hand == DECLARER;
+        int res = forDeclarer ? -1 : Integer.MAX_VALUE;
+        // the card on top of the trick is between the hand's cards too
+        int others = top;
+        for (int i = 0; i < NOP; ++i) {
+            if (i != hand) {
+                others |= hands[i];
+            }
+        }
+        int prev = 0;
+        while (cards != 0) {
+            int bit = cards & -cards;
+            cards &= cards - 1;
+            if (prev != 0 && (others & (bit - 1) & ~(prev - 1)) == 0) {
+                // no other hand's cards between, the same as prev
+                prev = bit;
+                continue;
+            }
+            prev = bit;
+            hands[hand] &= ~bit;
+            int tricks;
+            if (bit > top) {
+                tricks = play(hands, leader, played + 1, bit, hand, max);
+            } else {
+                tricks = play(hands, leader, played + 1, top, winner, max);
+            }
+            hands[hand] |= bit;
+            if (forDeclarer ? res < tricks : res > tricks) {
+                res = tricks;
+            }
+        }
+        return res;
+    }
+
+    private int get(CardSet mine, CardSet leftSuit, CardSet rightSuit) {
+        int layout = layout(mine, leftSuit, rightSuit);
+        if (layout < 0) {
+            throw new RuntimeException(String.format("invalid suit layout %s, %s, %s", mine, leftSuit, rightSuit));
+        }
+        return table[layout];
+    }
+
+    // cards that both defenders have are left's only, as in CardSet.simplifyHands(.., false)
+    static int layout(CardSet mine, CardSet leftSuit, CardSet rightSuit) {
+        int all = mine.bitmap | leftSuit.bitmap | rightSuit.bitmap;
+        if (all == 0) {
+            return 0;
+        }
+        int shift = CardSet.suitOffset(Card.get(Integer.lowestOneBit(all)).getSuit());
+        if ((all & ~(SUIT_LIST_MASK << shift)) != 0 || (mine.bitmap & (leftSuit.bitmap | rightSuit.bitmap)) != 0) {
+            return -1;
+        }
+        int left = leftSuit.bitmap;
+        int right = rightSuit.bitmap & ~left;
+        return CardSet.SPREAD[mine.bitmap >>> shift] | CardSet.SPREAD[left >>> shift] << 1 |
+            3 * CardSet.SPREAD[right >>> shift];
+    }
+
+    public int guaranteed(CardSet mine, CardSet leftSuit, CardSet rightSuit, int leader) {
+        return (get(mine, leftSuit, rightSuit) >>> (8 * leader)) & 0x0f;
+    }
+
+    public int max(CardSet mine, CardSet leftSuit, CardSet rightSuit, int leader) {
+        return (get(mine, leftSuit, rightSuit) >>> (8 * leader + 4)) & 0x0f;
+    }
+
+    // declarer's lead for guaranteed tricks, null when there are none
+    public Card bestLead(CardSet mine, CardSet leftSuit, CardSet rightSuit) {
+        int bestLead = get(mine, leftSuit, rightSuit) >>> 24;
+        if (bestLead == 0) {
+            return null;
+        }
+        return Card.get(1 << (CardSet.suitOffset(mine.first().getSuit()) + bestLead - 1));
+    }
+
+    // guaranteed tricks of the whole hand, one lookup for each suit
+    public int handTricks(CardSet myHand, CardSet leftHand, CardSet rightHand, int leader) {
+        int res = 0;
+        for (Card.Suit suit : Card.Suit.values()) {
+            res += guaranteed(myHand.list(suit), leftHand.list(suit), rightHand.list(suit), leader);
+        }
+        return res;
+    }
+}
@@ -97,6 +97,8 @@ public class Config implements Serializable {
     public final Property<Integer> pauseBetweenMoves = new Property<>("Pause between moves, msec", 100);
 
     public final Property<Integer> pauseBetweenRounds = new Property<>("", 100);
+    // time for a bot to find a card when playing for tricks, 0 - until the best card is found
+    public final Property<Integer> moveTimeLimit = new Property<>("Bot move time limit, msec", 0);
 //    public final Property<IntTriplet> animDelay = new Property<>("Animation Timeout", new IntTriplet(100, 1, 200));
 //    public final Property<Integer> animDelay = new Property<>("", 100);
 
@@ -49,6 +49,7 @@ public class BaseTrick {
 
     private static final int INDEX_MASK_LEN = 24;                                           // 24
     private static final int INDEX_MASK = (1 << INDEX_MASK_LEN) - 1;
+    public static final int MAX_INDEX = INDEX_MASK;
     private static final int INDEX_SHIFT = TOP_SHIFT + TOP_LEN;                             // 30
 
     public static final int TOTAL_USED_BITS = INDEX_SHIFT + INDEX_MASK_LEN;                 // 53
@@ -29,17 +29,15 @@ import com.ab.util.BidData.PlayerBid;
 public class Bot extends Player {
     public static CardList debugDrop = null;
 
-    // when declarer is Bot, it uses the same logic for declarer and defenders
-    // so playerBid is the same and can be shared
-    static PlayerBid playerBid;
-
-    public static Bot targetBot;  // either forTricksBot or misereBot
-    static Trick trick;
-
     public Bot(int number) {
         this.number = number;
     }
 
+    public Bot(EngineContext context, int number) {
+        this.context = context;
+        this.number = number;
+    }
+
     public Bot(Player realPlayer) {
         super(realPlayer);
         if (realPlayer != null) {
@@ -65,9 +63,7 @@ public class Bot extends Player {
     @Override
     public void clear() {
         super.clear();
-        playerBid = null;
-        targetBot = null;
-        trick = null;
+        context.clearRound();
         debugDrop = null;
     }
 
@@ -75,13 +71,22 @@ public class Bot extends Player {
     public void setTricks(int tricks) {
         super.setTricks(tricks);
         if (gameManager().declarerNumber == this.number &&
-            this.getClass().equals(Bot.class) && targetBot != null) {
-            targetBot.setTricks(tricks);
+            this.getClass().equals(Bot.class) && context.targetBot != null) {
+            context.targetBot.setTricks(tricks);
         }
     }
 
     @Override
     public Bid getBid(Bid minBid, int elderHand) {
+        context.startSolving();
+        try {
+            return calcBid(minBid, elderHand);
+        } finally {
+            context.endSolving();
+        }
+    }
+
+    private Bid calcBid(Bid minBid, int elderHand) {
         elderHand = (this.number - elderHand + NOP) % NOP;  // relative to self
         ForTricksBot forTricksBot = new ForTricksBot(this);
         MisereBot misereBot = new MisereBot(this);
@@ -119,17 +124,34 @@ public class Bot extends Player {
         throw new RuntimeException("stub!");
     }
 
+    // true when bm4Iteration() and compare() depend on TrickNode only,
+    // then TrickList can be built in parallel
+    boolean isDoubleDummy() {
+        return false;
+    }
+
     // 12 cards
     @Override
     public void declareRound(Bid minBid, int _elderHand) {
+        context.startSolving();
+        try {
+            calcDeclaration(minBid, _elderHand);
+        } finally {
+            context.endSolving();
+        }
+    }
+
+    private void calcDeclaration(Bid minBid, int _elderHand) {
         int elderHand = (this.number - _elderHand + NOP) % NOP;  // relative to self
+        Bot targetBot;
         if (Bid.BID_MISERE.equals(minBid)) {
             targetBot = new MisereBot(this);
         } else {
             targetBot = new ForTricksBot(this);
         }
+        context.targetBot = targetBot;
         BidData.PlayerBid playerBid = targetBot.getDrop(elderHand, 2);
-        Bot.playerBid = playerBid;
+        context.playerBid = playerBid;
         this.bid = targetBot.getBid();
         drop(playerBid.drops);
         targetBot.drop(playerBid.drops);
@@ -161,18 +183,33 @@ public class Bot extends Player {
 
     @Override
     public Card play(Trick trick) {
+        context.startSolving();
+        try {
+            return calcPlay(trick);
+        } finally {
+            context.endSolving();
+        }
+    }
+
+    private Card calcPlay(Trick trick) {
         if (myHand.size() == 1) {
             return myHand.first();
         }
         if (trick.minBid == null) {
             return playAllPass(trick);
         }
-        if (targetBot == null) {
+        if (context.targetBot == null) {
             // when declarer is human; todo: verify declaration!
             Player declarer = gameManager().getDeclarerForDefender();
             declarer.declareRound(gameManager().minBid, trick.getStartedBy());
         }
-        return targetBot.play(trick);
+        if (MonteCarlo.SAMPLING && !Bid.BID_MISERE.equals(trick.minBid) && !MonteCarlo.knowsHands(this)) {
+            Card card = MonteCarlo.forBot(this, trick).getCard();
+            if (card != null) {
+                return card;
+            }
+        }
+        return context.targetBot.play(trick);
     }
 
     Card playAllPass1stHand(Trick trick) {
@@ -0,0 +1,47 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Cooperative cancellation for long calculations, e.g. TrickList build.
+ * Cancelled from any thread, checked by the calculating one.
+ */
+
+package com.ab.jpref.engine;
+
+public class CancellationToken {
+    private volatile String reason;
+
+    // reason goes to PrefExceptionRerun, for GameManager it is RestartCommand name
+    public void cancel(String reason) {
+        if (reason == null) {
+            throw new RuntimeException("cancel reason cannot be null");
+        }
+        this.reason = reason;
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public void check() throws Player.PrefExceptionRerun {
+        String reason = this.reason;
+        if (reason != null) {
+            throw new Player.PrefExceptionRerun(reason);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Double dummy solver for analysis tools, does not need GameManager
+ * hands[0] is declarer, hands[1] and hands[2] are his left and right defenders
+ * An instance is not thread-safe, use one solver per thread.
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardList;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+
+import static com.ab.jpref.config.Config.NOP;
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+
+public class DoubleDummySolver {
+    public static final int NO_TRUMP = Card.Suit.values().length;   // table row for no-trump
+
+    private final TrickList trickList;
+
+    public DoubleDummySolver(TrickList.TrickPool trickPool) {
+        trickList = new TrickList(new EngineContext(), trickPool, false);
+    }
+
+    // solve() and solveCards() throw TrickList.TimeLimitException when the time is over, 0 - no limit
+    void setDeadline(long deadline) {
+        trickList.setDeadline(deadline);
+    }
+
+    // trumpSuit == null for no-trump, leader is relative to declarer
+    // returns declarer tricks
+    public int solve(Card.Suit trumpSuit, int leader, CardSet... hands) {
+        validate(leader, hands);
+        Trick trick = new Trick();
+        trick.setStartedBy(leader);
+        trick.setBid(toBid(trumpSuit));
+        trick.setNumber(ROUND_SIZE - hands[0].size());
+        Bot bot = new ForTricksBot(hands);
+        TrickList.TrickNode[] nodes = trickList.buildNodes(bot, 0, trick, hands, hands);
+        return TrickList.getEstimate(nodes);
+    }
+
+    // declarer tricks after each of the candidates is played to trick, the builds share positions;
+    // trick.getStartedBy() is relative to declarer, hands are without the trick cards
+    public int[] solveCards(Trick trick, CardList candidates, CardSet... hands) {
+        if (hands.length != NOP) {
+            throw new RuntimeException(String.format("need %d hands, got %d", NOP, hands.length));
+        }
+        Bot bot = new ForTricksBot(hands);
+        return trickList.buildCards(bot, 0, trick, candidates, hands);
+    }
+
+    // declarer tricks for every trump suit and leader, table[suit.getValue()][leader],
+    // table[NO_TRUMP][leader] for no-trump. The solves share trickPool and positions.
+    public int[][] solveAll(CardSet... hands) {
+        int[][] table = new int[NO_TRUMP + 1][NOP];
+        for (int i = 0; i <= NO_TRUMP; ++i) {
+            Card.Suit trumpSuit = null;
+            if (i < NO_TRUMP) {
+                trumpSuit = Card.Suit.fromValue(i);
+            }
+            for (int leader = 0; leader < NOP; ++leader) {
+                table[i][leader] = solve(trumpSuit, leader, hands);
+            }
+        }
+        return table;
+    }
+
+    private static Config.Bid toBid(Card.Suit trumpSuit) {
+        if (trumpSuit == null) {
+            return Config.Bid.BID_6N;
+        }
+        return Config.Bid.fromValue(Config.Bid.BID_6S.getValue() + trumpSuit.getValue());
+    }
+
+    private static void validate(int leader, CardSet... hands) {
+        if (hands.length != NOP) {
+            throw new RuntimeException(String.format("need %d hands, got %d", NOP, hands.length));
+        }
+        if (leader < 0 || leader >= NOP) {
+            throw new RuntimeException(String.format("invalid leader %d", leader));
+        }
+        int size = hands[0].size();
+        if (size > ROUND_SIZE || hands[1].size() != size || hands[2].size() != size) {
+            throw new RuntimeException(String.format("invalid hands %s", CardSet.toString(hands)));
+        }
+        if (CardSet.union(hands).size() != NOP * size) {
+            throw new RuntimeException(String.format("hands overlap %s", CardSet.toString(hands)));
+        }
+    }
+}
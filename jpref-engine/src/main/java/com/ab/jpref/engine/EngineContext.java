@@ -0,0 +1,129 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * State of one table: GameManager, TrickList and the bots' round data.
+ * Players, bots and tricks get it from the table they belong to, so several tables
+ * can run in one JVM, each in its own thread, e.g.
+ *   EngineContext context = new EngineContext();
+ *   new TrickList(context, new TrickPool());
+ *   new GameManager(context, config, null).runGame(inputStream, 0);
+ * The single table GUI and the tests use the default context.
+ * A context is not thread-safe, one game thread per context.
+ * When many tables share the process, solverPermits bound the number of bots
+ * thinking at once, see GameServer.
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.util.BidData.PlayerBid;
+import com.ab.util.ScoreCalculator;
+
+import java.util.concurrent.Semaphore;
+
+public class EngineContext {
+    private static final EngineContext defaultContext = new EngineContext();
+
+    GameManager gameManager;
+    TrickList trickList;
+
+    // when declarer is Bot, it uses the same logic for declarer and defenders
+    // so playerBid is the same and can be shared
+    PlayerBid playerBid;
+    Bot targetBot;  // either forTricksBot or misereBot
+    Trick trick;
+    private ScoreCalculator scoreCalculator;
+
+    private final Semaphore solverPermits;  // shared by the tables, null - no limit
+    private int solving;                    // nested bot calls hold one permit
+    // build the lists for the human player's possible cards while waiting for the move,
+    // see TrickList.ponder(), the builds do not take solverPermits
+    private boolean pondering = true;
+
+    public EngineContext() {
+        this(null);
+    }
+
+    public EngineContext(Semaphore solverPermits) {
+        this.solverPermits = solverPermits;
+    }
+
+    public static EngineContext getDefault() {
+        return defaultContext;
+    }
+
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    public TrickList getTrickList() {
+        return trickList;
+    }
+
+    public PlayerBid getPlayerBid() {
+        return playerBid;
+    }
+
+    public void setPlayerBid(PlayerBid playerBid) {
+        this.playerBid = playerBid;
+    }
+
+    public Bot getTargetBot() {
+        return targetBot;
+    }
+
+    public void setTargetBot(Bot targetBot) {
+        this.targetBot = targetBot;
+    }
+
+    // created on demand, Config must be loaded first
+    public ScoreCalculator getScoreCalculator() {
+        if (scoreCalculator == null) {
+            scoreCalculator = ScoreCalculator.getInstance();
+        }
+        return scoreCalculator;
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    // a bot starts its bid, declaration or move
+    void startSolving() {
+        if (solverPermits != null && solving++ == 0) {
+            solverPermits.acquireUninterruptibly();
+        }
+    }
+
+    void endSolving() {
+        if (solverPermits != null && --solving == 0) {
+            solverPermits.release();
+        }
+    }
+
+    // the bots' data of the round
+    void clearRound() {
+        playerBid = null;
+        targetBot = null;
+        trick = null;
+    }
+}
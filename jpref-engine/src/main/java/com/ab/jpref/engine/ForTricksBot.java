@@ -22,10 +22,10 @@ package com.ab.jpref.engine;
 
 import com.ab.jpref.cards.Card;
 import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.cards.SuitTricks;
 import com.ab.jpref.config.Config;
 import com.ab.util.BidData;
 import com.ab.util.BidData.PlayerBid;
-import com.ab.util.Pair;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -49,6 +49,14 @@ public class ForTricksBot extends Bot {
         if (maxPlayerBid != null) {
             return maxPlayerBid;
         }
+        if (TalonEvaluator.SAMPLED_BIDS && myHand.size() == ROUND_SIZE) {
+            TalonEvaluator.Evaluation evaluation = TalonEvaluator.evaluate(myHand, elderHand);
+            if (evaluation.getDeals() > 0) {
+                maxPlayerBid = new PlayerBid(evaluation.getBid(TalonEvaluator.MAKE_PERCENT));
+                return maxPlayerBid;
+            }
+            // no deal was solved in time, the table is used
+        }
         CardSet talonCandidates = myHand.complement();
         CardSet myHand = new CardSet(this.myHand);
         List<PlayerBid> playerBids = new ArrayList<>();
@@ -82,8 +90,10 @@ public class ForTricksBot extends Bot {
             playerBid.drops = new CardSet(debugDrop);
             return playerBid;
         }
+        PlayerBid playerBid = context.playerBid;
         if (playerBid == null || !myHand.contains(playerBid.drops)) {
             playerBid = BidData.getInstance().getBid(myHand, bid, elderHand, nDrops);
+            context.playerBid = playerBid;
         }
         this.bid = playerBid.toBid();
         return playerBid;
@@ -91,14 +101,14 @@ public class ForTricksBot extends Bot {
 
     @Override
     public Card play(Trick trick) {
-        Bot.trick = trick;
+        context.trick = trick;
 
         if (trick.getNumber() == 0 && trick.isEmpty() &&
                 trick.getTurn() == gameManager().declarerNumber) {
             return declarerPlay();
         } else {
             // create and use trick list
-            Card res = TrickList.getInstance().getCard(this, trick);
+            Card res = context.trickList.getCard(this, trick);
             if (res != null) {
                 return res;
             }
@@ -125,17 +135,20 @@ public class ForTricksBot extends Bot {
     // returns sorted in ascending order
     List<SuitInfo> getAllSuitInfo() {
         List<SuitInfo> allSuitInfo = new ArrayList<>();
-        List<Pair<String, Integer>> pairs = BidData.getInstance().toSuitChunks(myHand, 0);
-        for (Pair<String, Integer> pair : pairs) {
+        SuitTricks suitTricks = SuitTricks.getInstance();
+        BidData bidData = BidData.getInstance();
+        long handPattern = bidData.toHandPattern(myHand.getBitmap());
+        for (int i = 0; i < BidData.suitCount(handPattern); ++i) {
             SuitInfo suitInfo = new SuitInfo();
             allSuitInfo.add(suitInfo);
-            suitInfo.suit = BidData.getInstance().getSuit(pair.first);
+            suitInfo.suit = BidData.getSuit(handPattern, i);
             suitInfo.cardSet = myHand.list(suitInfo.suit);
-            suitInfo.chunk = pair.first.substring(1, pair.first.length() - 1);
+            suitInfo.chunk = bidData.getPattern(handPattern, i).substring(1);
             suitInfo.length = suitInfo.cardSet.size();
-            Pair<Integer, Card> p = suitInfo.cardSet.minWantedTricks(leftHand.list(suitInfo.suit), rightHand.list(suitInfo.suit));
-            suitInfo.minTricks = p.first;
-            suitInfo.best = p.second;
+            CardSet leftSuit = leftHand.list(suitInfo.suit);
+            CardSet rightSuit = rightHand.list(suitInfo.suit);
+            suitInfo.minTricks = suitTricks.guaranteed(suitInfo.cardSet, leftSuit, rightSuit, SuitTricks.DECLARER);
+            suitInfo.best = suitTricks.bestLead(suitInfo.cardSet, leftSuit, rightSuit);
             if (suitInfo.suit.equals(this.bid.getTrump())) {
                 suitInfo.flags |= suitFlagTrump;
             } else if (suitInfo.length >= 4) {
@@ -143,7 +156,7 @@ public class ForTricksBot extends Bot {
             } else if (suitInfo.length == suitInfo.minTricks) {
                 suitInfo.flags |= suitFlagAllMine;
             } else {
-                Card theirMax = CardSet.max(leftHand.list(suitInfo.suit), rightHand.list(suitInfo.suit));
+                Card theirMax = CardSet.max(leftSuit, rightSuit);
                 if (suitInfo.cardSet.last().compareInTrick(theirMax) > 0) {
                     suitInfo.flags |= suitFlagMyTop;
                 }
@@ -277,6 +290,11 @@ public class ForTricksBot extends Bot {
         return res | BACKWARD_FLAG;
     }
 
+    @Override
+    boolean isDoubleDummy() {
+        return true;
+    }
+
     @Override
     protected int compare(long bestSoFarTrickData, long probeTrickData, int turn) {
         int num = (BaseTrick.getStartedBy(probeTrickData) + turn) % NOP;   // who played last
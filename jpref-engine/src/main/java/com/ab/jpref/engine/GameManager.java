@@ -28,7 +28,6 @@ import static com.ab.jpref.config.Config.NOP;
 import static com.ab.jpref.config.Config.ROUND_SIZE;
 import static com.ab.util.Logger.printf;
 import static com.ab.util.Logger.println;
-import com.ab.util.ScoreCalculator;
 import com.ab.util.Util;
 
 import java.io.IOException;
@@ -39,6 +38,7 @@ public class GameManager {
     public static boolean RELEASE = false;
     public static boolean DEBUG_LOG = false;
 
+    // seat types for the single table GUI, a GameManager keeps its own copy
     public static final boolean[] BOTS = new boolean[NOP];
     static {
         BOTS[0] = false;
@@ -73,19 +73,22 @@ public class GameManager {
 
     InputStream testInputStream;
 
-    private static GameManager instance;
-
+    // the table, see EngineContext
+    private final EngineContext context;
     private static Config config;
     private final Util util = Util.getInstance();   // needed for testing
     private final EventObserver eventObserver;
+    private final boolean[] bots;
     final CardSet discarded = new CardSet();
 
     private Thread gameThread;
+    // bots' calculations for the current round
+    private volatile CancellationToken cancellationToken = new CancellationToken();
     Player[] players = new Player[NOP];
     Player[] savedPlayers;
     private CardList deck;
     private CardList talonCards = new CardList();   // todo: CardSet
-    private final Trick trick = new Trick();
+    private final Trick trick;
     private CardList lastTrickCards = new CardList();
     private boolean showDefendersCards;
 
@@ -102,14 +105,22 @@ public class GameManager {
     public boolean replayMode;
 
     public GameManager(Config config, EventObserver eventObserver) {
-        instance = this;
+        this(EngineContext.getDefault(), config, eventObserver);
+    }
+
+    // without eventObserver all players are bots, otherwise as in BOTS
+    public GameManager(EngineContext context, Config config, EventObserver eventObserver) {
+        this(context, config, eventObserver, eventObserver == null ? new boolean[] {true, true, true} : BOTS);
+    }
+
+    // bots[i] - player i is Bot, otherwise HumanPlayer
+    public GameManager(EngineContext context, Config config, EventObserver eventObserver, boolean[] bots) {
+        this.context = context;
+        context.gameManager = this;
+        trick = new Trick(context);
         GameManager.config = config;
         this.eventObserver = eventObserver;
-        if (eventObserver == null) {
-            GameManager.BOTS[0] = true;
-            GameManager.BOTS[1] = true;
-            GameManager.BOTS[2] = true;
-        }
+        this.bots = bots.clone();
         sleep(config.pauseBetweenTricks.get());
         players = createPlayers();
         printf(DEBUG_LOG, "GameManager constructed\n");
@@ -118,17 +129,22 @@ public class GameManager {
     Player[] createPlayers() {
         Player[] players = new Player[NOP];
         for (int i = 0; i < NOP; ++i) {
-            if (BOTS[i]) {
-                players[i] = new Bot(i);
+            if (bots[i]) {
+                players[i] = new Bot(context, i);
             } else {
-                players[i] = new HumanPlayer(i, eventObserver);
+                players[i] = new HumanPlayer(context, i, eventObserver);
             }
         }
         return players;
     }
 
+    // the manager of the default context, for the single table GUI
     public static GameManager getInstance() {
-        return instance;
+        return EngineContext.getDefault().gameManager;
+    }
+
+    public EngineContext getContext() {
+        return context;
     }
 
     public Player[] getPlayers() {
@@ -318,7 +334,9 @@ public class GameManager {
         RestartCommand next;
         try {
             gameThread = Thread.currentThread();
-            TrickList.getInstance().initBuild();
+            cancellationToken = new CancellationToken();
+            context.trickList.setCancellationToken(cancellationToken);
+            context.trickList.initBuild();
             trick.clear(elderHand);
             lastTrickCards.clear();
             deal(deck);
@@ -370,7 +388,7 @@ public class GameManager {
                 } else if (declarer.getBid().equals(Bid.BID_WITHOUT_THREE)) {
                     param = minBid.goal();
                 }
-                ScoreCalculator.getInstance().calculate(players, param);
+                context.getScoreCalculator().calculate(players, param);
                 ++lineCount;
             }
             if (eventObserver == null) {
@@ -401,7 +419,7 @@ public class GameManager {
                 updateFromAvatars();
             } else if (next.equals(RestartCommand.offer)) {
                 updateFromAvatars();
-                ScoreCalculator.getInstance().calculate(players, minBid.goal());
+                context.getScoreCalculator().calculate(players, minBid.goal());
                 if (eventObserver == null) {
                     next = RestartCommand.newRound;
                 } else {
@@ -540,9 +558,10 @@ public class GameManager {
         Player right = players[(declarerNum + 2) % NOP];
         declarer.leftHand = new CardSet(left.myHand);
         declarer.rightHand = new CardSet(right.myHand);
-        if (Bot.targetBot != null) {
-            Bot.targetBot.leftHand = declarer.leftHand;
-            Bot.targetBot.rightHand = declarer.rightHand;
+        Bot targetBot = context.targetBot;
+        if (targetBot != null) {
+            targetBot.leftHand = declarer.leftHand;
+            targetBot.rightHand = declarer.rightHand;
         }
         left.rightHand = new CardSet(declarerHand);
         left.leftHand = new CardSet(right.myHand);
@@ -569,8 +588,8 @@ public class GameManager {
     private void incrementTricks() {
         Player p = players[trick.getTop()];
         p.incrementTricks();
-        if (Bot.targetBot != null && p == this.declarer) {
-            Bot.targetBot.setTricks(p.getTricks());
+        if (context.targetBot != null && p == this.declarer) {
+            context.targetBot.setTricks(p.getTricks());
         }
     }
 
@@ -694,7 +713,7 @@ public class GameManager {
             for (int j = 0; j < players.length; ++j) {
                 Player player = players[trick.getTurn()];
                 Card card;
-                if (c == 0 && j == 0 && player != declarer) {
+                if (c == 0 && j == 0 && player != declarer && !MonteCarlo.SAMPLING) {
                     revealCards();
                 }
                 card = player.play(trick);
@@ -703,7 +722,7 @@ public class GameManager {
                     throw new RuntimeException(String.format("player %d, %s, trick %s", player.number, player, trick));
                 }
                 trick.add(card);
-                if (c == 0 && j == 0 && player == declarer) {
+                if (c == 0 && j == 0 && (player == declarer || MonteCarlo.SAMPLING)) {
                     revealCards();
                 }
                 if (player instanceof Bot) {
@@ -784,6 +803,8 @@ public class GameManager {
 
     public void restart(RestartCommand command) {
         printf(DEBUG_LOG, "this %s, game %s\n", Thread.currentThread().getName(), gameThread.getName());
+        // a bot may be building its trick list
+        cancellationToken.cancel(command.name());
         for (Player player : this.getPlayers()) {
             player.abortThread(command);
         }
@@ -797,5 +818,7 @@ public class GameManager {
         void setCurrentPlayer(Player player);
         void update(RoundStage roundStage);
         RestartCommand showScores();
+        // the human player cannot play the card, HumanPlayer waits for another one
+        default void rejectMove(Player player, Card card) {}
     }
 }
\ No newline at end of file
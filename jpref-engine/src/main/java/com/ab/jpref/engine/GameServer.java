@@ -0,0 +1,446 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Many tables in one process: every connection is a table with the client in seat 0
+ * and bots in the other seats. As in the GUI, the client also plays for the defenders
+ * with open cards, e.g. on misère. The table's game loop and the reader of its socket
+ * run on virtual threads when the JVM has them (Java 21+), otherwise on platform threads.
+ * Pondering is off for the tables, so a human's turn only parks the game thread
+ * in HumanPlayer.takeFromQueue() and idle tables cost little. Bots of all the tables
+ * think on at most SOLVER_THREADS threads at once, see EngineContext.startSolving().
+ *   java -cp jpref-engine/target/classes com.ab.jpref.engine.GameServer [-p port] [-c solverThreads] [-v]
+ *
+ * Line protocol, UTF-8:
+ * client -> server
+ *   move <card|bid>    e.g. move ♠A, move Pass, move 6♠, move Whist
+ *   drop <cards>       e.g. drop ♠7♦8
+ *   ok                 the talon is seen
+ *   replay | newRound | offer
+ *   quit
+ * server -> client
+ *   table <id> <virtual|platform>
+ *   stage <RoundStage>
+ *   hand <cards>
+ *   turn <seat> bot
+ *   turn <seat> human [<cards to play>], the client's move
+ *   tricks <tricks0> <tricks1> <tricks2>
+ *   score <seat> <pool> <dump> <left> <right>, for all the seats when the round ends
+ *   error <message>
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+import com.ab.jpref.engine.GameManager.RestartCommand;
+import com.ab.jpref.engine.GameManager.RoundStage;
+import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.Logger;
+import com.ab.util.Util;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ab.jpref.config.Config.NOP;
+
+public class GameServer {
+    public static boolean DEBUG_LOG = false;
+    public static final int HUMAN = 0;      // the client's seat
+    public static int SOLVER_THREADS = Runtime.getRuntime().availableProcessors();
+    public static int POSITIONS_CAPACITY = 1 << 12;    // initial, per table
+
+    private final Config config;
+    private final ServerSocket serverSocket;
+    private final Semaphore solverPermits;
+    private final ThreadFactory threadFactory;
+    private final boolean virtual;
+    private final Set<Table> tables = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger tableId = new AtomicInteger();
+    private volatile boolean stopped;
+
+    public GameServer(Config config, int port) throws IOException {
+        this.config = config;
+        this.serverSocket = new ServerSocket(port);
+        this.solverPermits = new Semaphore(SOLVER_THREADS);
+        ThreadFactory threadFactory = virtualThreadFactory();
+        this.virtual = threadFactory != null;
+        if (threadFactory == null) {
+            final AtomicInteger count = new AtomicInteger();
+            threadFactory = (r) -> {
+                Thread thread = new Thread(r, "table-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        this.threadFactory = threadFactory;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 7070;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-p":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "-c":
+                    SOLVER_THREADS = Integer.parseInt(args[++i]);
+                    break;
+                case "-v":
+                    verbose = true;
+                    break;
+                default:
+                    throw new RuntimeException(String.format("invalid argument %s", args[i]));
+            }
+        }
+        if (!verbose) {
+            SelfPlay.silenceLog();
+        }
+        GameServer gameServer = new GameServer(Config.getInstance(), port);
+        System.err.printf("listening on %d, %s threads, %d solver threads\n",
+            gameServer.getPort(), gameServer.isVirtual() ? "virtual" : "platform", SOLVER_THREADS);
+        gameServer.run();
+    }
+
+    // Thread.ofVirtual().name("table-", 0).factory(), the sources are Java 8
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "table-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;    // Java 20 or older
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    public void start() {
+        threadFactory.newThread(this::run).start();
+    }
+
+    // accepts connections until stop()
+    public void run() {
+        while (!stopped) {
+            try {
+                Socket socket = serverSocket.accept();
+                Table table = new Table(tableId.getAndIncrement(), socket);
+                tables.add(table);
+                table.start();
+            } catch (IOException e) {
+                if (!stopped) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        for (Table table : tables) {
+            table.close();
+        }
+    }
+
+    class Table implements GameManager.EventObserver {
+        final int id;
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final PrintWriter writer;
+        private final EngineContext context = new EngineContext(solverPermits);
+        private volatile GameManager gameManager;
+        private volatile Player currentPlayer;
+        private volatile RoundStage stage;
+        private int sentHand;       // game thread
+        private volatile boolean closed;
+        private Thread gameThread;
+
+        Table(int id, Socket socket) throws IOException {
+            this.id = id;
+            this.socket = socket;
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void start() {
+            send("table %d %s", id, virtual ? "virtual" : "platform");
+            gameThread = threadFactory.newThread(this::play);
+            gameThread.start();
+            threadFactory.newThread(this::read).start();
+        }
+
+        // game thread
+        private void play() {
+            try {
+                // pondering would build the lists outside solverPermits
+                context.setPondering(false);
+                new TrickList(context, new TrickPool(), POSITIONS_CAPACITY);
+                boolean[] bots = new boolean[NOP];
+                bots[(HUMAN + 1) % NOP] = true;
+                bots[(HUMAN + 2) % NOP] = true;
+                gameManager = new GameManager(context, config, this, bots);
+                while (!closed) {
+                    gameManager.runGame(null, 0);
+                }
+            } catch (RuntimeException e) {
+                if (!closed) {
+                    // a bug, the other tables keep playing
+                    Logger.printf("table %d: %s\n", id, e);
+                    send("error %s", e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        // reader thread
+        private void read() {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!execute(line.trim())) {
+                        break;
+                    }
+                }
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                Logger.printf("table %d: %s\n", id, e);
+            } finally {
+                close();
+            }
+        }
+
+        // false to quit
+        boolean execute(String line) {
+            Logger.printf(DEBUG_LOG, "table %d got %s\n", id, line);
+            int i = line.indexOf(' ');
+            String command = i < 0 ? line : line.substring(0, i);
+            String arg = i < 0 ? "" : line.substring(i + 1).trim();
+            Player player = currentPlayer;
+            HumanPlayer human = player instanceof HumanPlayer ? (HumanPlayer) player : null;
+            switch (command) {
+                case "quit":
+                    return false;
+
+                case "replay":
+                case "newRound":
+                case "offer":
+                    if (stage == null) {
+                        send("error no round");
+                    } else {
+                        gameManager.restart(RestartCommand.valueOf(command));
+                    }
+                    return true;
+
+                default:
+                    break;
+            }
+            if (human == null) {
+                send("error not your turn");
+                return true;
+            }
+            switch (command) {
+                case "ok":
+                    human.accept(RoundStage.idle);
+                    break;
+
+                case "move":
+                    Config.Queueable q = toQueueable(arg);
+                    if (q == null) {
+                        send("error invalid move %s", arg);
+                    } else if (q instanceof Card != playing()) {
+                        send("error unexpected move %s", arg);
+                    } else {
+                        // a card is checked by HumanPlayer.play(), see rejectMove()
+                        human.accept(q);
+                    }
+                    break;
+
+                case "drop":
+                    CardSet drop = toCardSet(arg);
+                    if (drop == null || drop.size() != 2 || !human.getMyHand().contains(drop)) {
+                        send("error invalid drop %s", arg);
+                    } else {
+                        human.drop(drop);
+                    }
+                    break;
+
+                default:
+                    send("error unknown command %s", command);
+                    break;
+            }
+            return true;
+        }
+
+        // the next human turn is a card, update(play) may come after setCurrentPlayer()
+        private boolean playing() {
+            return RoundStage.play.equals(stage) || RoundStage.trickTaken.equals(stage);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            tables.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            if (gameThread != null) {
+                // wakes the game thread in HumanPlayer.takeFromQueue() or in sleep()
+                gameThread.interrupt();
+            }
+            Logger.printf(DEBUG_LOG, "table %d closed\n", id);
+        }
+
+        void send(String format, Object... args) {
+            synchronized (writer) {
+                writer.printf(format, args);
+                writer.print('\n');
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void setCurrentPlayer(Player player) {
+            currentPlayer = player;
+            if (!(player instanceof HumanPlayer)) {
+                send("turn %d bot", player.getNumber());
+                return;
+            }
+            HumanPlayer human = (HumanPlayer) player;
+            if (!playing()) {
+                send("turn %d human", player.getNumber());
+                return;
+            }
+            CardSet candidates = new CardSet();
+            int bit = 0;
+            while ((bit = CardSet.next(human.getMyHand().getBitmap(), bit)) != 0) {
+                Card card = Card.get(bit);
+                if (human.isOK2Play(card)) {
+                    candidates.add(card);
+                }
+            }
+            send("turn %d human %s", player.getNumber(), candidates);
+        }
+
+        // game thread
+        @Override
+        public void rejectMove(Player player, Card card) {
+            send("error cannot play %s", card);
+        }
+
+        @Override
+        public void update(RoundStage roundStage) {
+            if (roundStage == null) {
+                return;     // repaint
+            }
+            stage = roundStage;
+            send("stage %s", roundStage);
+            Player[] players = gameManager.getPlayers();
+            switch (roundStage) {
+                case bidding:
+                case showTalon:
+                case drop:
+                case play:
+                    CardSet hand = players[HUMAN].getMyHand();
+                    if (hand.getBitmap() != sentHand || !RoundStage.play.equals(roundStage)) {
+                        sentHand = hand.getBitmap();
+                        send("hand %s", hand);
+                    }
+                    break;
+                case trickTaken:
+                    send("tricks %d %d %d", players[0].getTricks(), players[1].getTricks(), players[2].getTricks());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public RestartCommand showScores() {
+            currentPlayer = null;
+            for (Player player : gameManager.getPlayers()) {
+                int[] points = new int[Player.PlayerPoints.values().length];
+                for (Player.RoundResults roundResults : player.getHistory()) {
+                    for (int i = 0; i < points.length; ++i) {
+                        points[i] += roundResults.getPoints(i);
+                    }
+                }
+                send("score %d %d %d %d %d", player.getNumber(),
+                    points[Player.PlayerPoints.poolPoints.ordinal()],
+                    points[Player.PlayerPoints.dumpPoints.ordinal()],
+                    points[Player.PlayerPoints.leftPoints.ordinal()],
+                    points[Player.PlayerPoints.rightPoints.ordinal()]);
+            }
+            return RestartCommand.newRound;
+        }
+    }
+
+    static Config.Queueable toQueueable(String name) {
+        Config.Bid bid = Config.Bid.fromName(name);
+        if (bid != null) {
+            return bid;
+        }
+        if (name.length() != 2) {
+            return null;
+        }
+        try {
+            return Card.fromName(name);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static CardSet toCardSet(String cards) {
+        try {
+            return new CardSet(Util.getInstance().toCardList(cards));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
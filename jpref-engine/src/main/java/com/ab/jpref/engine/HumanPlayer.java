@@ -21,6 +21,7 @@ package com.ab.jpref.engine;
 
 import static com.ab.jpref.engine.GameManager.RestartCommand;
 import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardSet;
 import com.ab.jpref.config.Config;
 import com.ab.util.Logger;
 
@@ -34,7 +35,8 @@ public class HumanPlayer extends Player {
     private final BlockingQueue<Config.Queueable> queue = new LinkedBlockingQueue<>();
     final GameManager.EventObserver clickable;
 
-    public HumanPlayer(int number, GameManager.EventObserver clickable) {
+    public HumanPlayer(EngineContext context, int number, GameManager.EventObserver clickable) {
+        this.context = context;
         this.number = number;
         this.clickable = clickable;
     }
@@ -141,7 +143,31 @@ public class HumanPlayer extends Player {
     @Override
     public Card play(Trick trick) {
         clickable.setCurrentPlayer(this);
-        Config.Queueable q = takeFromQueue();
+        TrickList trickList = context.trickList;
+        if (trickList != null) {
+            CardSet candidates = new CardSet();
+            int bit = 0;
+            while ((bit = CardSet.next(myHand.getBitmap(), bit)) != 0) {
+                Card card = Card.get(bit);
+                if (isOK2Play(card)) {
+                    candidates.add(card);
+                }
+            }
+            trickList.ponder(trick, candidates);
+        }
+        Config.Queueable q;
+        try {
+            // checked on the game thread, myHand and the trick change on it
+            while ((q = takeFromQueue()) instanceof Card &&
+                    (!myHand.contains((Card)q) || !isOK2Play((Card)q))) {
+                clickable.rejectMove(this, (Card)q);
+            }
+        } finally {
+            if (trickList != null) {
+                // the card is played or RestartCommand received
+                trickList.stopPondering();
+            }
+        }
         if (!(q instanceof Card)) {
             Logger.println(q);
             return Card.fromValue(1);  // dummy
@@ -153,7 +179,7 @@ public class HumanPlayer extends Player {
         if (card == null) {
             return false;
         }
-        Trick trick = GameManager.getInstance().getTrick();
+        Trick trick = gameManager().getTrick();
         if (trick.getStartingSuit() == null) {
             return true;
         }
@@ -27,6 +27,7 @@ import com.ab.jpref.cards.CardList;
 import com.ab.jpref.cards.CardSet;
 import com.ab.jpref.config.Config;
 import com.ab.util.BidData.PlayerBid;
+import com.ab.util.ClockCache;
 import com.ab.util.Logger;
 import com.ab.util.Util;
 
@@ -38,6 +39,9 @@ public class MisereBot extends Bot {
 //    public static DeclarerDrop declarerDrop = DeclarerDrop.First;
     public static DeclarerDrop declarerDrop = DeclarerDrop.Last;
     public static final boolean DEBUG_LOG = false;
+    public static boolean CACHE_MISERE = true;
+    // hand -> eval of the talons
+    static final ClockCache misereCache = new ClockCache(1 << 12);
 
     static final int MAX_EVAL = 1000;   // in ‰
     // https://summoning.ru/games/miser.shtml
@@ -126,11 +130,24 @@ public class MisereBot extends Bot {
         return eval;
     }
 
-    // eval possible talon out of 22 remaining cards
     boolean evalMisere(int elderHand) {
+        if (!CACHE_MISERE) {
+            return calcMisereEval() < 500;
+        }
+        long key = myHand.getBitmap() & 0xffffffffL;
+        long eval = misereCache.get(key);
+        if (eval == ClockCache.NULL_VALUE) {
+            eval = calcMisereEval();
+            misereCache.put(key, eval);
+        }
+        return eval < 500;
+    }
+
+    // eval possible talon out of 22 remaining cards
+    private int calcMisereEval() {
         int eval = getEval4Misere(myHand);
         if (eval == 0) {
-            return true;
+            return eval;
         }
         CardSet talonCandidates = myHand.complement();
         CardSet myHand = new CardSet(this.myHand);
@@ -168,8 +185,7 @@ public class MisereBot extends Bot {
         if (index > 6) {
             index = 6;
         }
-        PlayerBid playerBid = playerBids.get(index);
-        return playerBid.value < 500;
+        return playerBids.get(index).value;
     }
 
     @Override
@@ -180,13 +196,13 @@ public class MisereBot extends Bot {
             return playerBid;
         }
 //        int drop = this.myHand.size() - ROUND_SIZE;
-        if (Bot.playerBid != null) {
+        if (context.playerBid != null) {
             if (nDrops == 2) {
-                return Bot.playerBid;
+                return context.playerBid;
             }
-            if (this.myHand.contains(Bot.playerBid.drops) &&
+            if (this.myHand.contains(context.playerBid.drops) &&
                 this.myHand.equals(gameManager().declarerHand)) {
-                return Bot.playerBid;
+                return context.playerBid;
             }
         }
 
@@ -238,7 +254,7 @@ probes:
             CardSet.ListData listData = cardSet.maxUnwantedTricks(leftHand.list(suit), rightHand.list(suit));
             if (listData.maxTheyStart > 0) {
                 holes.add(listData);
-                if (trick == null || trick.startingSuit == null) {
+                if (context.trick == null || context.trick.startingSuit == null) {
                     // log it once per trick
                     Logger.printf(DEBUG_LOG, "hole %s\n", listData.thisSuit);
                 }
@@ -248,7 +264,7 @@ probes:
 
     @Override
     public Card play(Trick trick) {
-        Bot.trick = trick;
+        context.trick = trick;
 
         getHoles(gameManager().declarerNumber);
 
@@ -256,12 +272,12 @@ probes:
         if (trick.getTurn() != gameManager().declarerNumber) {
             // defender
             if (holes.isEmpty()) {
-                if (TrickList.bestNodes[0] != null) {
-                    TrickList.bestNodes[0].trickData = 0;   // ugly
+                if (context.trickList.bestNodes[0] != null) {
+                    context.trickList.bestNodes[0].trickData = 0;   // ugly
                 }
                 return gameManager().players[trick.getTurn()].anyCard(trick, false);
             }
-            res = TrickList.getInstance().getCard(this, trick);
+            res = context.trickList.getCard(this, trick);
             if (res != null) {
                 return res;
             }
@@ -291,6 +307,7 @@ probes:
     }
 
     private Card declarerPlay() {
+        Trick trick = context.trick;
         HandResults handResults = misereTricks(trick.getTurn());
         CardSet.ListData bestListData = null;
         if (trick.startingSuit == null) {
@@ -414,7 +431,8 @@ probes:
 
     private MisereBot getMisereBot(TrickList.TrickNode trickNode) {
         MisereBot misereBot = new MisereBot(trickNode.hands);
-        Bot.trick = trickNode;
+        misereBot.context = this.context;
+        context.trick = trickNode;
 
         int rightSize = misereBot.rightHand.size();
         if (trickNode.startingSuit != null) {
@@ -452,7 +470,7 @@ probes:
 
     private Card play4Build(TrickList.TrickNode trickNode) {
         MisereBot misereBot = getMisereBot(trickNode);
-        Bot.trick = trickNode;
+        context.trick = trickNode;
         misereBot.getHoles(0);
         Card card = misereBot.declarerPlay();
         if (card == null) {
@@ -0,0 +1,314 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Card choice when the other hands are not known, e.g. the opening lead:
+ * deals the unseen cards as they can be, see Dealer, solves every sample double dummy
+ * for each of the possible cards and plays the best one on average.
+ * Player.leftHand and rightHand are the cards the others may have, Trick.drop() removes
+ * the suits they showed void. The defenders know that the talon went to declarer,
+ * the extra cards are declarer's drops. With BID_FILTER, declarer's 12 cards
+ * must be worth the contract for BidData.
+ * The samples go to a pool of THREADS workers, each keeps its DoubleDummySolver.
+ * TIME_LIMIT stops the solves in progress too. The samples cut off by the time, or by
+ * a full TrickPool, are dropped, and they are the layouts that are hard to solve,
+ * so the averages lean to the simple ones. Below MIN_SAMPLES getCard() does not trust them.
+ * Sample n is dealt with seed + n, so the result depends on the number of samples only.
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardList;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.cards.Dealer;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.BidData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ab.jpref.config.Config.NOP;
+import static com.ab.util.Logger.printf;
+
+public class MonteCarlo {
+    public static boolean DEBUG_LOG = false;
+    // Bot samples when it does not know the other hands, GameManager then reveals the cards after the opening lead
+    public static boolean SAMPLING = false;
+    public static int SAMPLES = 400;
+    public static int TIME_LIMIT = 1000;    // msec per card
+    public static int MIN_SAMPLES = 10;     // fewer solved samples are not used, unless SAMPLES is less
+    public static int THREADS = Runtime.getRuntime().availableProcessors();
+    public static boolean BID_FILTER = true;
+    public static int FILTER_ATTEMPTS = 20; // then the sample is used as is
+
+    private static ForkJoinPool pool;
+    // the workers and their solvers are shared with TalonEvaluator
+    private static final ThreadLocal<DoubleDummySolver> solvers =
+        ThreadLocal.withInitial(() -> new DoubleDummySolver(new TrickPool()));
+
+    private final Trick trick;      // relative to declarer
+    private final int declarer;
+    private final int me;
+    private final CardSet myHand;
+    private final CardList candidates;
+    private final int[] seats;      // of the dealt hands, NOP for the drops
+    private final Dealer dealer;
+    private final long seed;
+    private Bid contract;           // for BID_FILTER
+    private int elderHand;          // relative to declarer
+
+    // statistics of the last getCard()
+    private int samples;
+    private long[] totals;          // declarer tricks by candidate
+
+    // hands[me] is my hand, the others are the cards they may have, sizes are their cards
+    public MonteCarlo(Trick trick, int declarer, int me, CardSet[] hands, int[] sizes) {
+        this.trick = new Trick(trick);
+        this.trick.setStartedBy((trick.getStartedBy() - declarer + NOP) % NOP);
+        this.declarer = declarer;
+        this.me = me;
+        this.myHand = new CardSet(hands[me]);
+
+        List<CardSet> allowed = new ArrayList<>();
+        List<Integer> _sizes = new ArrayList<>();
+        List<Integer> _seats = new ArrayList<>();
+        CardSet unseen = new CardSet();
+        int places = 0;
+        for (int i = 1; i < NOP; ++i) {
+            int seat = (me + i) % NOP;
+            CardSet hand = new CardSet(hands[seat]);
+            hand.remove(myHand);
+            allowed.add(hand);
+            _sizes.add(sizes[seat]);
+            _seats.add(seat);
+            unseen.add(hand);
+            places += sizes[seat];
+        }
+        // the cards of a sequence, e.g. ♠9J when ♠X is played, take the same tricks, one of them is solved
+        int legal = legalCards(myHand, trick).getBitmap();
+        this.candidates = new CardSet(CardSet.bm4buildForward(legal, unseen.getBitmap())).toCardList();
+        int drops = unseen.size() - places;
+        if (drops > 0) {
+            // declarer's drops, they are out of play for declarer himself
+            allowed.add(me == declarer ? unseen : new CardSet(hands[declarer]));
+            _sizes.add(drops);
+            _seats.add(NOP);
+        }
+        seats = new int[_seats.size()];
+        int[] dealSizes = new int[seats.length];
+        for (int i = 0; i < seats.length; ++i) {
+            seats[i] = _seats.get(i);
+            dealSizes[i] = _sizes.get(i);
+        }
+        dealer = new Dealer(allowed.toArray(new CardSet[0]), dealSizes);
+        seed = (long) myHand.getBitmap() << 32 ^ unseen.getBitmap() ^ trick.getNumber();
+    }
+
+    // for the bot on its turn
+    public static MonteCarlo forBot(Bot bot, Trick trick) {
+        GameManager gameManager = bot.gameManager();
+        int me = bot.getNumber();
+        int declarer = gameManager.declarerNumber;
+        CardSet[] hands = new CardSet[NOP];
+        int[] sizes = new int[NOP];
+        hands[me] = bot.myHand;
+        hands[(me + 1) % NOP] = new CardSet(bot.leftHand);
+        hands[(me + 2) % NOP] = new CardSet(bot.rightHand);
+        for (int i = 0; i < NOP; ++i) {
+            sizes[i] = gameManager.players[i].myHand.size();
+        }
+        if (me != declarer) {
+            int partner = NOP - me - declarer;  // seats are 0, 1, 2
+            hands[partner].remove(new CardSet(gameManager.getTalonCards()));
+        }
+        MonteCarlo monteCarlo = new MonteCarlo(trick, declarer, me, hands, sizes);
+        if (me != declarer) {
+            monteCarlo.contract = trick.minBid;
+            monteCarlo.elderHand = (declarer - gameManager.elderHand + NOP) % NOP;
+        }
+        return monteCarlo;
+    }
+
+    // true when the bot knows all the cards
+    static boolean knowsHands(Bot bot) {
+        Player[] players = bot.gameManager().players;
+        int me = bot.getNumber();
+        return bot.leftHand.size() == players[(me + 1) % NOP].myHand.size() &&
+            bot.rightHand.size() == players[(me + 2) % NOP].myHand.size();
+    }
+
+    static CardSet legalCards(CardSet hand, Trick trick) {
+        Card.Suit suit = trick.getStartingSuit();
+        if (suit == null) {
+            return new CardSet(hand);
+        }
+        CardSet cards = hand.list(suit);
+        if (cards.isEmpty() && trick.getTrumpSuit() != null) {
+            cards = hand.list(trick.getTrumpSuit());
+        }
+        if (cards.isEmpty()) {
+            return new CardSet(hand);
+        }
+        return cards;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public CardList getCandidates() {
+        return candidates;
+    }
+
+    // average declarer tricks for the candidate
+    public double getAverage(int index) {
+        return samples == 0 ? 0 : (double) totals[index] / samples;
+    }
+
+    // null when less than MIN_SAMPLES were solved in TIME_LIMIT
+    public Card getCard() {
+        samples = 0;
+        totals = new long[candidates.size()];
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        long start = System.currentTimeMillis();
+        final long deadline = TIME_LIMIT > 0 ? start + TIME_LIMIT : Long.MAX_VALUE;
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<long[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; ++i) {
+            tasks.add(getPool().submit(() -> sample(next, deadline)));
+        }
+        try {
+            for (Future<long[]> task : tasks) {
+                long[] res = task.get();
+                for (int i = 0; i < totals.length; ++i) {
+                    totals[i] += res[i];
+                }
+                samples += res[totals.length];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        if (samples == 0 || samples < Math.min(MIN_SAMPLES, SAMPLES)) {
+            printf(DEBUG_LOG, "sampled %d deals in %d msec, not used\n",
+                samples, System.currentTimeMillis() - start);
+            return null;
+        }
+        int best = 0;
+        for (int i = 1; i < totals.length; ++i) {
+            boolean better = me == declarer ? totals[i] > totals[best] : totals[i] < totals[best];
+            if (better) {
+                best = i;
+            }
+        }
+        printf(DEBUG_LOG, "sampled %d deals in %d msec, %s: %.2f\n",
+            samples, System.currentTimeMillis() - start, candidates.get(best), getAverage(best));
+        return candidates.get(best);
+    }
+
+    // runs on a pool thread, totals by candidate and the number of samples last;
+    // the sample the time is over in is not counted, see MIN_SAMPLES
+    private long[] sample(AtomicInteger next, long deadline) {
+        long[] res = new long[candidates.size() + 1];
+        DoubleDummySolver solver = getSolver();
+        if (deadline < Long.MAX_VALUE) {
+            solver.setDeadline(deadline);
+        }
+        try {
+            int n;
+            while ((n = next.getAndIncrement()) < SAMPLES && System.currentTimeMillis() < deadline) {
+                CardSet[] hands = deal(new SplittableRandom(seed + n));
+                if (hands == null) {
+                    continue;
+                }
+                int[] tricks;
+                try {
+                    tricks = solver.solveCards(trick, candidates, hands);
+                } catch (TrickList.TrickPoolException e) {
+                    continue;
+                }
+                for (int i = 0; i < tricks.length; ++i) {
+                    res[i] += tricks[i];
+                }
+                ++res[candidates.size()];
+            }
+        } catch (TrickList.TimeLimitException e) {
+            // the time is over
+        } finally {
+            solver.setDeadline(0);
+        }
+        return res;
+    }
+
+    // hands relative to declarer
+    CardSet[] deal(SplittableRandom random) {
+        CardSet[] dealt = null;
+        for (int attempt = 0; attempt < FILTER_ATTEMPTS; ++attempt) {
+            dealt = dealer.deal(random);
+            if (dealt == null) {
+                return null;
+            }
+            if (!BID_FILTER || contract == null || isBidOk(dealt)) {
+                break;
+            }
+        }
+        CardSet[] hands = new CardSet[NOP];
+        hands[(me - declarer + NOP) % NOP] = myHand;
+        for (int i = 0; i < seats.length; ++i) {
+            if (seats[i] < NOP) {
+                hands[(seats[i] - declarer + NOP) % NOP] = dealt[i];
+            }
+        }
+        return hands;
+    }
+
+    // declarer's hand and drops can make the contract
+    private boolean isBidOk(CardSet[] dealt) {
+        CardSet cards = new CardSet();
+        for (int i = 0; i < seats.length; ++i) {
+            if (seats[i] == declarer || seats[i] == NOP) {
+                cards.add(dealt[i]);
+            }
+        }
+        int drops = cards.size() - myHand.size();
+        BidData.PlayerBid playerBid = BidData.getInstance().getBid(cards, contract, elderHand, drops);
+        return playerBid.toBid().goal() >= contract.goal();
+    }
+
+    static DoubleDummySolver getSolver() {
+        return solvers.get();
+    }
+
+    static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(THREADS);
+        }
+        return pool;
+    }
+}
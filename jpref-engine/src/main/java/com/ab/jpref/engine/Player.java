@@ -43,6 +43,8 @@ public abstract class Player {
         leftPoints, rightPoints, poolPoints, dumpPoints, status
     }
 
+    // the table, see EngineContext
+    protected EngineContext context = EngineContext.getDefault();
     protected int number;
     protected Config.Bid bid;
     protected CardSet myHand = new CardSet();
@@ -73,8 +75,12 @@ public abstract class Player {
     // to be implemented in a subclass (human player)
     public boolean playWhistLaying() { return true; }
 
-    public static GameManager gameManager() {
-        return GameManager.getInstance();
+    public GameManager gameManager() {
+        return context.gameManager;
+    }
+
+    public EngineContext getContext() {
+        return context;
     }
 
     public int getNumber() {
@@ -85,6 +91,7 @@ public abstract class Player {
 
     public Player(Player other) {
         if (other != null) {
+            context = other.context;
             bid = other.bid;
             myHand = new CardSet(other.myHand);
             leftHand = new CardSet(other.leftHand);
@@ -0,0 +1,271 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Headless self-play to validate bot changes: bots in all seats play random deals
+ * or the deals from a file on several tables at once, one table per worker thread.
+ * Without EventObserver GameManager does not pause, the game log is off by default.
+ * Every round is a CSV line, in the order the rounds are complete.
+ * Random deal n is shuffled by seed + n, so the same seed gives the same deals
+ * for any number of threads.
+ *   java -cp jpref-engine/target/classes com.ab.jpref.engine.SelfPlay \
+ *        [-n deals] [-s seed] [-t threads] [-f dealFile] [-o out.csv] [-v]
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.CardList;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.Logger;
+import com.ab.util.Util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ab.jpref.config.Config.NOP;
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+
+public class SelfPlay {
+    public static final String CSV_HEADER =
+        "deal,elderhand,hand0,hand1,hand2,talon,bid,declarer,tricks0,tricks1,tricks2,result,solver msec,positions";
+    public static int PROGRESS_PERIOD = 1000;   // rounds
+
+    private final Config config;
+    private final int threads;
+    private final PrintStream out;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+
+    public static class Deal {
+        final int number;
+        final CardList deck;    // 3 hands and talon
+        final int elderHand;
+
+        public Deal(int number, CardList deck, int elderHand) {
+            this.number = number;
+            this.deck = deck;
+            this.elderHand = elderHand;
+        }
+
+        public static Deal random(int number, long seed) {
+            CardList deck = CardList.getDeck();
+            // java.util.Random of close seeds starts alike, SplittableRandom mixes them
+            Collections.shuffle(deck, new Random(new SplittableRandom(seed + number).nextLong()));
+            return new Deal(number, deck, number % NOP);
+        }
+    }
+
+    interface DealSource {
+        Deal get(int number);
+    }
+
+    public SelfPlay(Config config, int threads, PrintStream out) {
+        this.config = config;
+        this.threads = threads;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int deals = 1000;
+        long seed = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String dealFile = null;
+        String outFile = null;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-n":
+                    deals = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-f":
+                    dealFile = args[++i];
+                    break;
+                case "-o":
+                    outFile = args[++i];
+                    break;
+                case "-v":
+                    verbose = true;
+                    break;
+                default:
+                    throw new RuntimeException(String.format("invalid argument %s", args[i]));
+            }
+        }
+        if (!verbose) {
+            silenceLog();
+        }
+        if (threads > 1) {
+            // the tables keep all the cores busy
+            TrickList.PARALLEL_BUILD = false;
+        }
+        PrintStream out = outFile == null ? System.out :
+            new PrintStream(new FileOutputStream(outFile), false, StandardCharsets.UTF_8.name());
+        SelfPlay selfPlay = new SelfPlay(Config.getInstance(), threads, out);
+        long start = System.currentTimeMillis();
+        int rounds;
+        if (dealFile == null) {
+            System.err.printf("seed %d\n", seed);
+            rounds = selfPlay.run(deals, seed);
+        } else {
+            try (InputStream is = new FileInputStream(dealFile)) {
+                rounds = selfPlay.run(is);
+            }
+        }
+        long dur = System.currentTimeMillis() - start;
+        System.err.printf("%,d rounds in %,d msec on %d threads\n", rounds, dur, threads);
+        out.close();
+    }
+
+    // game log off
+    static void silenceLog() {
+        Logger.setHolder(new Logger.LogHolder() {
+            @Override
+            public PrintStream getLogStream() {
+                return new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) {}
+                });
+            }
+        });
+        Logger.DEBUG_LOG = false;
+    }
+
+    // random deals
+    public int run(int deals, final long seed) throws InterruptedException {
+        return run(deals, new DealSource() {
+            @Override
+            public Deal get(int number) {
+                return Deal.random(number, seed);
+            }
+        });
+    }
+
+    // deal lines as in etc/tests, "deal: hand0 hand1 hand2 talon elderhand ..."
+    public int run(InputStream is) throws IOException, InterruptedException {
+        final List<Deal> deals = new ArrayList<>();
+        Util.getInstance().getList(is,
+            (res, tokens) -> {
+                if (!tokens.get(0).startsWith(Util.DEAL_MARK)) {
+                    return;     // ignore
+                }
+                CardList deck = new CardList();
+                for (String token : tokens) {
+                    if (!token.endsWith(":")) {
+                        deck.addAll(Util.getInstance().toCardList(token));
+                    }
+                }
+                deck.verifyDeck();
+                int elderHand = Integer.parseInt(tokens.get(tokens.size() - 1)) % NOP;
+                deals.add(new Deal(deals.size(), deck, elderHand));
+            });
+        return run(deals.size(), new DealSource() {
+            @Override
+            public Deal get(int number) {
+                return deals.get(number);
+            }
+        });
+    }
+
+    int run(final int deals, final DealSource dealSource) throws InterruptedException {
+        out.println(CSV_HEADER);
+        next.set(0);
+        done.set(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            tasks.add(executor.submit(() -> play(deals, dealSource)));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new RuntimeException(e.getCause());
+        }
+        out.flush();
+        return done.get();
+    }
+
+    // runs on a worker thread with its own table
+    private void play(int deals, DealSource dealSource) {
+        EngineContext context = new EngineContext();
+        TrickList trickList = new TrickList(context, new TrickPool());
+        GameManager gameManager = new GameManager(context, config, null);
+        int number;
+        while ((number = next.getAndIncrement()) < deals) {
+            Deal deal = dealSource.get(number);
+            trickList.resetSolveStatistics();
+            gameManager.playRound(new CardList(deal.deck), deal.elderHand);
+            out.println(toCsv(deal, gameManager, trickList));
+            for (Player player : gameManager.players) {
+                // the round results are in CSV, keep the memory flat
+                player.clearHistory();
+            }
+            int count = done.incrementAndGet();
+            if (PROGRESS_PERIOD > 0 && count % PROGRESS_PERIOD == 0) {
+                System.err.printf("%,d rounds\n", count);
+            }
+        }
+    }
+
+    static String toCsv(Deal deal, GameManager gameManager, TrickList trickList) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(deal.number).append(',').append(deal.elderHand);
+        for (int i = 0; i <= NOP; ++i) {
+            int k = i * ROUND_SIZE;
+            int end = i < NOP ? k + ROUND_SIZE : deal.deck.size();
+            sb.append(',').append(new CardSet(deal.deck.subList(k, end)));
+        }
+        Player declarer = gameManager.declarer;
+        Bid bid = declarer == null ? gameManager.minBid : declarer.getBid();
+        sb.append(',').append(bid);
+        sb.append(',').append(declarer == null ? "" : String.valueOf(declarer.getNumber()));
+        for (Player player : gameManager.players) {
+            sb.append(',').append(player.getTricks());
+        }
+        String result = "";
+        if (Bid.BID_WITHOUT_THREE.equals(bid)) {
+            result = "conceded";
+        } else if (declarer != null) {
+            int tricks = declarer.getTricks();
+            boolean made = Bid.BID_MISERE.equals(bid) ? tricks == 0 : tricks >= bid.goal();
+            result = made ? "made" : "failed";
+        }
+        sb.append(',').append(result);
+        sb.append(',').append(trickList.getSolveTime());
+        sb.append(',').append(trickList.getSolvedPositions());
+        return sb.toString();
+    }
+}
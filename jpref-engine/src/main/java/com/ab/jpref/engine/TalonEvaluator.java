@@ -0,0 +1,331 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Hand evaluation for bidding by the deals themselves:
+ * for each of the 231 talons from the 22 unseen cards the hand takes it, drops 2 cards as BidData would,
+ * the other 20 cards are dealt LAYOUTS times between the opponents, and every deal is solved
+ * double dummy for each trump suit and no-trump with elder hand's lead.
+ * A trump suit shorter than MIN_TRUMPS is not bid, nor solved, the deal counts as the contract's failure.
+ * The result is the distribution of declarer tricks for each contract suit.
+ * The talons go in a random order fixed by the hand, so when TIME_LIMIT is over
+ * the talons done are still a fair sample, the solve in progress then stops too.
+ * The deals run on MonteCarlo workers.
+ * The evaluations are cached by hand, elder hand, LAYOUTS and MIN_TRUMPS, the ones cut short by TIME_LIMIT
+ * are used while TIME_LIMIT is not longer, the empty and interrupted ones are not kept.
+ */
+
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.cards.Dealer;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.util.BidData;
+import com.ab.util.ClockCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ab.jpref.config.Config.NOP;
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+import static com.ab.util.Logger.printf;
+
+public class TalonEvaluator {
+    public static boolean DEBUG_LOG = false;
+    // ForTricksBot.getMaxPlayerBid() bids by the evaluation
+    public static boolean SAMPLED_BIDS = false;
+    public static int LAYOUTS = 1;          // opponents' deals per talon
+    public static int TIME_LIMIT = 1000;    // msec per hand
+    public static int MAKE_PERCENT = 50;    // the contract is bid when it is made in that many deals
+    public static int MIN_TRUMPS = 4;       // in declarer's hand after the drops
+    public static final int CONTRACTS = 5;  // ♠, ♣, ♦, ♥, no-trump as in Bid values
+    public static final int CACHE_SIZE = 1 << 10;
+
+    private static final ClockCache cache = new ClockCache(CACHE_SIZE);   // only the keys
+    private static final Evaluation[] evaluations = new Evaluation[cache.capacity()];   // by cache index
+
+    public static class Evaluation {
+        final long key;
+        // deals by contract suit and declarer tricks
+        final int[][] counts = new int[CONTRACTS][ROUND_SIZE + 1];
+        final int[] solved = new int[CONTRACTS];
+        int deals;
+        int talons;
+        boolean complete;       // every talon
+        int timeLimit;          // TIME_LIMIT it was evaluated with
+
+        Evaluation(long key) {
+            this.key = key;
+        }
+
+        public int getDeals() {
+            return deals;
+        }
+
+        public int getTalons() {
+            return talons;
+        }
+
+        public int getSolved(int contract) {
+            return solved[contract];
+        }
+
+        // share of all deals where declarer takes at least tricks
+        public double probability(int contract, int tricks) {
+            if (deals == 0) {
+                return 0;
+            }
+            int n = 0;
+            for (int i = tricks; i <= ROUND_SIZE; ++i) {
+                n += counts[contract][i];
+            }
+            return (double) n / deals;
+        }
+
+        // of the solved deals
+        public double average(int contract) {
+            if (solved[contract] == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i <= ROUND_SIZE; ++i) {
+                sum += (long) i * counts[contract][i];
+            }
+            return (double) sum / solved[contract];
+        }
+
+        // the highest contract made in makePercent of the deals, BID_PASS if none
+        public Bid getBid(int makePercent) {
+            Bid res = Bid.BID_PASS;
+            for (int tricks = Bid.BID_6S.goal(); tricks <= ROUND_SIZE; ++tricks) {
+                for (int contract = 0; contract < CONTRACTS; ++contract) {
+                    if (100 * probability(contract, tricks) >= makePercent) {
+                        res = toBid(contract, tricks);
+                    }
+                }
+            }
+            return res;
+        }
+
+        void add(Evaluation that) {
+            for (int i = 0; i < CONTRACTS; ++i) {
+                for (int j = 0; j <= ROUND_SIZE; ++j) {
+                    counts[i][j] += that.counts[i][j];
+                }
+                solved[i] += that.solved[i];
+            }
+            deals += that.deals;
+            talons += that.talons;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d talons, %d deals", talons, deals));
+            for (int i = 0; i < CONTRACTS; ++i) {
+                sb.append(String.format(", %s %.2f", toBid(i, Bid.BID_6S.goal()), average(i)));
+            }
+            return sb.toString();
+        }
+    }
+
+    static Bid toBid(int contract, int tricks) {
+        return Bid.fromValue(tricks * 10 + contract + 1);
+    }
+
+    // elderHand is relative to hand's owner, as for BidData
+    public static Evaluation evaluate(CardSet hand, int elderHand) {
+        if (hand.size() != ROUND_SIZE) {
+            throw new RuntimeException(String.format("invalid hand %s", hand));
+        }
+        long seed = (long) elderHand << 32 | hand.getBitmap() & 0xffffffffL;
+        long key = toKey(seed);
+        Evaluation evaluation = getCached(key);
+        if (evaluation != null) {
+            return evaluation;
+        }
+        evaluation = calcEvaluation(key, seed, hand, elderHand);
+        if (evaluation.deals > 0 && !Thread.currentThread().isInterrupted()) {
+            putCached(evaluation);
+        }
+        return evaluation;
+    }
+
+    // the settings that change the result go to the key, the drops follow BidData that has none;
+    // MIN_TRUMPS over ROUND_SIZE are all the same, no trump suit is solved
+    static long toKey(long seed) {
+        return ((long) LAYOUTS << 4 | Math.min(MIN_TRUMPS, ROUND_SIZE + 1)) << 34 | seed;
+    }
+
+    private static Evaluation calcEvaluation(long key, long seed, CardSet hand, int elderHand) {
+        long start = System.currentTimeMillis();
+        final long deadline = TIME_LIMIT > 0 ? start + TIME_LIMIT : Long.MAX_VALUE;
+        CardSet unseen = hand.complement();
+        int[] talons = new int[unseen.size() * (unseen.size() - 1) / 2];
+        int k = 0;
+        int bit0 = 0;
+        while ((bit0 = CardSet.next(unseen.getBitmap(), bit0)) != 0) {
+            int bit1 = bit0;
+            while ((bit1 = CardSet.next(unseen.getBitmap(), bit1)) != 0) {
+                talons[k++] = bit0 | bit1;
+            }
+        }
+        // Fisher-Yates, the order depends on the hand only
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = talons.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int talon = talons[i];
+            talons[i] = talons[j];
+            talons[j] = talon;
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<Evaluation>> tasks = new ArrayList<>();
+        for (int i = 0; i < MonteCarlo.THREADS; ++i) {
+            tasks.add(MonteCarlo.getPool().submit(() -> evaluateTalons(key, seed, hand, elderHand, talons, next, deadline)));
+        }
+        Evaluation evaluation = new Evaluation(key);
+        try {
+            for (Future<Evaluation> task : tasks) {
+                evaluation.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        evaluation.complete = evaluation.talons == talons.length;
+        evaluation.timeLimit = TIME_LIMIT;
+        printf(DEBUG_LOG, "%s: %s in %d msec\n", hand, evaluation, System.currentTimeMillis() - start);
+        return evaluation;
+    }
+
+    // runs on a pool thread; a deal the time is over in is not counted
+    private static Evaluation evaluateTalons(long key, long seed, CardSet hand, int elderHand, int[] talons,
+                                             AtomicInteger next, long deadline) {
+        Evaluation evaluation = new Evaluation(key);
+        DoubleDummySolver solver = MonteCarlo.getSolver();
+        int leader = elderHand;     // hand's owner is declarer
+        int[] tricks = new int[CONTRACTS];
+        if (deadline < Long.MAX_VALUE) {
+            solver.setDeadline(deadline);
+        }
+        try {
+            int t;
+            while ((t = next.getAndIncrement()) < talons.length && System.currentTimeMillis() < deadline) {
+                CardSet talon = new CardSet(talons[t]);
+                CardSet declarerHand = new CardSet(hand, talon);
+                declarerHand.remove(getDrops(declarerHand, elderHand));
+                CardSet rest = hand.complement();
+                rest.remove(talon);     // the drops are out of play
+                Dealer dealer = new Dealer(new CardSet[] {rest, rest}, new int[] {ROUND_SIZE, ROUND_SIZE});
+                SplittableRandom random = new SplittableRandom(seed ^ talons[t]);
+                for (int n = 0; n < LAYOUTS; ++n) {
+                    CardSet[] dealt = dealer.deal(random);
+                    CardSet[] hands = {declarerHand, dealt[0], dealt[1]};
+                    for (int contract = 0; contract < CONTRACTS; ++contract) {
+                        tricks[contract] = -1;
+                        Card.Suit trumpSuit = contract < Card.Suit.values().length ? Card.Suit.fromValue(contract) : null;
+                        if (trumpSuit != null && declarerHand.list(trumpSuit).size() < MIN_TRUMPS) {
+                            continue;
+                        }
+                        try {
+                            tricks[contract] = solver.solve(trumpSuit, leader, hands);
+                        } catch (TrickList.TrickPoolException e) {
+                            // not counted, the pool is cleared
+                        }
+                    }
+                    for (int contract = 0; contract < CONTRACTS; ++contract) {
+                        if (tricks[contract] >= 0) {
+                            ++evaluation.counts[contract][tricks[contract]];
+                            ++evaluation.solved[contract];
+                        }
+                    }
+                    ++evaluation.deals;
+                }
+                ++evaluation.talons;
+            }
+        } catch (TrickList.TimeLimitException e) {
+            // the time is over
+        } finally {
+            solver.setDeadline(0);
+        }
+        return evaluation;
+    }
+
+    // the drops BidData chooses for 12 cards, the lowest cards if it passes
+    static CardSet getDrops(CardSet cards, int elderHand) {
+        BidData.PlayerBid playerBid = BidData.getInstance().getBid(cards, Bid.BID_6S, elderHand, NOP - 1);
+        CardSet drops = new CardSet(playerBid.drops);
+        CardSet rest = new CardSet(cards);
+        rest.remove(drops);
+        while (drops.size() < NOP - 1) {
+            Card card = lowest(rest);
+            drops.add(card);
+            rest.remove(card);
+        }
+        return drops;
+    }
+
+    // the lowest rank, from the shortest suit
+    private static Card lowest(CardSet cards) {
+        Card res = null;
+        for (Card.Suit suit : Card.Suit.values()) {
+            CardSet suitCards = cards.list(suit);
+            if (suitCards.isEmpty()) {
+                continue;
+            }
+            Card card = suitCards.first();
+            if (res == null || card.getRank().compareTo(res.getRank()) < 0 ||
+                    card.getRank() == res.getRank() && suitCards.size() < cards.list(res.getSuit()).size()) {
+                res = card;
+            }
+        }
+        return res;
+    }
+
+    // null when not cached or cut short by a shorter TIME_LIMIT
+    private static synchronized Evaluation getCached(long key) {
+        int index = cache.getIndex(key);
+        if (index == ClockCache.NULL_INDEX) {
+            return null;
+        }
+        Evaluation evaluation = evaluations[index];
+        if (!evaluation.complete && (TIME_LIMIT <= 0 || TIME_LIMIT > evaluation.timeLimit)) {
+            return null;
+        }
+        return evaluation;
+    }
+
+    // the evaluation takes the entry of the key ClockCache evicts
+    private static synchronized void putCached(Evaluation evaluation) {
+        evaluations[cache.put(evaluation.key, 0)] = evaluation;
+    }
+
+    // for tests
+    static synchronized void clearCache() {
+        cache.clear();
+        Arrays.fill(evaluations, null);
+    }
+}
@@ -24,19 +24,26 @@ import static com.ab.jpref.cards.Card.Suit;
 import com.ab.jpref.cards.CardList;
 import com.ab.jpref.cards.CardSet;
 import com.ab.jpref.config.Config;
-import static com.ab.jpref.engine.Bot.targetBot;
 
 public class Trick extends BaseTrick {
     int number;
     Suit startingSuit, trumpSuit;
     Config.Bid minBid;
     Card topCard;
+    // the table the trick is played on
+    final EngineContext context;
 
     public Trick() {
+        this(EngineContext.getDefault());
+    }
+
+    public Trick(EngineContext context) {
         super();
+        this.context = context;
     }
 
     public Trick(Trick that) {
+        this.context = that.context;
         this.trickData = that.trickData;
         this.startingSuit = that.startingSuit;
         this.trumpSuit = that.trumpSuit;
@@ -75,7 +82,7 @@ public class Trick extends BaseTrick {
         setNumber(0);
         minBid = null;
         trumpSuit = null;
-        GameManager.getInstance().discarded.clear();
+        context.gameManager.discarded.clear();
     }
 
     @Override
@@ -135,7 +142,8 @@ public class Trick extends BaseTrick {
     }
 
     protected void drop(Card card) {
-        GameManager gameManager = GameManager.getInstance();
+        GameManager gameManager = context.gameManager;
+        Bot targetBot = context.targetBot;
         int discardingPlayer = -1;
         if (startingSuit != null && !card.getSuit().equals(startingSuit)) {
             discardingPlayer = getTurn();
@@ -218,7 +226,7 @@ public class Trick extends BaseTrick {
     }
 
     public String toColorString() {
-        GameManager gameManager = GameManager.getInstance();
+        GameManager gameManager = context.gameManager;
         StringBuilder sb = new StringBuilder();
         sb.append("trick ").append(this.getNumber()).append(": ");
         String sep = "";
@@ -24,7 +24,26 @@ package com.ab.jpref.engine;
 import com.ab.jpref.cards.Card;
 import com.ab.jpref.cards.CardList;
 import com.ab.jpref.cards.CardSet;
-import com.ab.util.SimpleLongIntMap;
+import com.ab.jpref.config.Config;
+import com.ab.util.ConcurrentLongIntCache;
+import com.ab.util.ConcurrentLongIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
 
 import static com.ab.jpref.config.Config.NOP;
 import static com.ab.jpref.config.Config.ROUND_SIZE;
@@ -37,40 +56,183 @@ public class TrickList {
     public static final boolean DEBUG_LOG = false;
     public static final boolean PRINT_BEST_PATH = true;    // for debug
 
-    static final TrickNode[] bestNodes = new TrickNode[ROUND_SIZE + 1];
-    static final TrickList.TrickNode[] probesBestNodes = new TrickList.TrickNode[ROUND_SIZE + 1];
-    static int nodeIndex = 0;
+    // build the 1st trick(s) on ForkJoinPool, the result is the same as for sequential build
+    public static boolean PARALLEL_BUILD = Runtime.getRuntime().availableProcessors() > 1;
+    public static int PARALLEL_DEPTH = 1;       // number of tricks to split between the workers
+    private static ForkJoinPool forkJoinPool;
+    // threads to build the lists for the possible cards on the human player's turn, 0 - no pondering
+    public static int PONDER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    // positions that differ only in played cards of the same relative ranks are the same,
+    // used when bm4Iteration() and compare() depend on the cards order only
+    public static boolean CANONICAL_POSITIONS = true;
+    // with CANONICAL_POSITIONS, suits are sorted by their codes, the trump suit goes first
+    public static boolean SUIT_SYMMETRY = true;
+    // skip a complete trick when sure tricks show that it cannot replace the best one,
+    // the result is the same as without it
+    public static boolean QUICK_TRICKS = true;
+    // for double-dummy bots, declarer tricks for positions with up to ENDGAME_TRICKS tricks left
+    // are kept for all builds and deals, the tricks after them are built for the best list only.
+    // These positions are keyed by the exact cards, bm4Iteration() can give different tricks
+    // for the positions with the same canonical key.
+    // 0 - no endgame table, up to MAX_ENDGAME_TRICKS
+    public static int ENDGAME_TRICKS = 4;
+    private static final int MAX_ENDGAME_TRICKS = 5;    // card owners as base 3 number, 3^15 < 2^24
+    private static final int ENDGAME_VALUE_BITS = 3;    // declarer tricks + 1, up to MAX_ENDGAME_TRICKS + 1
+    // by bot class, the values depend on the bot's minimax.
+    // A table is never cleared, when full the new positions replace the old ones
+    private static final Map<Class<?>, ConcurrentLongIntCache> endgameTables = new ConcurrentHashMap<>();
+    private static final int SUIT_CODE_LENGTH = 14;     // (3^9 - 1) / 2 codes for up to 8 cards
+    // COMPRESS[rem << 8 | bits]: bits of rem packed to the lowest bits
+    private static final byte[] COMPRESS = new byte[1 << (2 * TOTAL_RANKS)];
+    // TERNARY[bits]: binary digits as base 3 number
+    private static final int[] TERNARY = new int[1 << TOTAL_RANKS];
+    // SUIT_CODE_OFFSET[n]: the first code for n cards in suit
+    private static final int[] SUIT_CODE_OFFSET = new int[TOTAL_RANKS + 2];
+    private static final int[] POW3 = new int[TOTAL_RANKS + 1];
+
+    static {
+        for (int rem = 0; rem < (1 << TOTAL_RANKS); ++rem) {
+            for (int bits = 0; bits < (1 << TOTAL_RANKS); ++bits) {
+                int res = 0;
+                int j = 0;
+                for (int i = 0; i < TOTAL_RANKS; ++i) {
+                    if ((rem & (1 << i)) != 0) {
+                        if ((bits & (1 << i)) != 0) {
+                            res |= 1 << j;
+                        }
+                        ++j;
+                    }
+                }
+                COMPRESS[rem << TOTAL_RANKS | bits] = (byte)res;
+            }
+        }
+        for (int bits = 0; bits < (1 << TOTAL_RANKS); ++bits) {
+            int res = 0;
+            for (int i = TOTAL_RANKS - 1; i >= 0; --i) {
+                res = 3 * res + ((bits >> i) & 1);
+            }
+            TERNARY[bits] = res;
+        }
+        int pow3 = 1;
+        for (int n = 1; n < SUIT_CODE_OFFSET.length; ++n) {
+            SUIT_CODE_OFFSET[n] = SUIT_CODE_OFFSET[n - 1] + pow3;
+            POW3[n - 1] = pow3;
+            pow3 *= 3;
+        }
+    }
+
+    // the table, see EngineContext
+    private final EngineContext context;
+    final TrickNode[] bestNodes = new TrickNode[ROUND_SIZE + 1];
+    final TrickList.TrickNode[] probesBestNodes = new TrickList.TrickNode[ROUND_SIZE + 1];
+    int nodeIndex = 0;
 
     private final TrickPool trickPool;
-    private final SimpleLongIntMap positions;
+    private final ConcurrentLongIntMap positions;
+    private boolean parallel;
+    private boolean canonical;
+    private boolean symmetric;
+    private boolean bounded;
+    private ConcurrentLongIntCache endgamePositions;
+    // with Config.moveTimeLimit the list is built by iterative deepening,
+    // the tricks after horizon are not built, their futureTricks are estimated
+    private int horizon = ROUND_SIZE;
+    private int frontiers;          // tricks estimated at horizon
+    // positions with estimated tricks, valid for one iteration only
+    private ConcurrentLongIntMap horizonPositions;
+    private long deadline;          // 0 - no time limit
+    private boolean timed;          // the current iteration can be stopped
+    private int leafCount;
+
+    // the build is stopped when the token is cancelled, e.g. on GameManager.restart()
+    private volatile CancellationToken cancellationToken;
+    public static int PROGRESS_PERIOD = 250;    // msec
+    private ProgressListener progressListener;
+    private long progressStart;
+    private volatile long nextProgress;
+    private final boolean verbose;
+    // workers for parallel drop probes, each with its own trickPool and positions
+    private final Queue<TrickList> probeTrickLists = new ConcurrentLinkedQueue<>();
+    // pondering builds, they share trickPool and positions with this one
+    private final List<PonderTask> ponderTasks = new ArrayList<>();
+    private CancellationToken ponderToken;
+    // PONDER_THREADS for this list only, so one game's pondering does not hold up another one
+    private ForkJoinPool ponderPool;
 
     private Bot targetBot;
     private int myNum;
 
+    // hands of the build that filled trickPool and positions,
+    // while the new hands are their subsets, the positions are still valid
+    private final CardSet[] builtHands = new CardSet[NOP];
+    private boolean builtCanonical;
+    private boolean builtSymmetric;
+
     // just statistics, not used
     private long start;
-    public static long maxListBuildTime = 0;
-    public static long maxSimilar = 0;
-    public static long maxPoolCount = 0;
-    public static long maxPositions = 0;
-    public static int similar = 0;
+    private long solveTime;         // getCard() msec since resetSolveStatistics()
+    private int solvedPositions;    // max positions since resetSolveStatistics()
+    // for all tables
+    public static final LongAccumulator maxListBuildTime = new LongAccumulator(Long::max, 0);
+    public static final LongAccumulator maxSimilar = new LongAccumulator(Long::max, 0);
+    public static final LongAccumulator maxPoolCount = new LongAccumulator(Long::max, 0);
+    public static final LongAccumulator maxPositions = new LongAccumulator(Long::max, 0);
+    // for the last build
+    int similar;
+    int endgame;        // endgame table hits
+    int pruned;
+    int choices;        // card choices with more than one candidate
+    int firstBest;      // choices where the first candidate was the best
 
-    private static TrickList instance;
+    // the list of the default context, for the single table GUI
     public static TrickList getInstance() {
-        return instance;
+        return EngineContext.getDefault().trickList;
     }
 
     public TrickList(TrickPool trickPool) {
-        instance = this;
+        this(EngineContext.getDefault(), trickPool);
+    }
+
+    public TrickList(EngineContext context, TrickPool trickPool) {
+        this(context, trickPool, ConcurrentLongIntMap.DEFAULT_CAPACITY);
+    }
+
+    // positions grow from positionsCapacity when they overflow, e.g. small for many idle tables
+    public TrickList(EngineContext context, TrickPool trickPool, int positionsCapacity) {
+        this(context, trickPool, positionsCapacity, true);
+        context.trickList = this;
+    }
+
+    // for DoubleDummySolver, does not replace the context's list
+    TrickList(EngineContext context, TrickPool trickPool, boolean verbose) {
+        this(context, trickPool, ConcurrentLongIntMap.DEFAULT_CAPACITY, verbose);
+    }
+
+    // for parallel drop probes too
+    private TrickList(EngineContext context, TrickPool trickPool, int positionsCapacity, boolean verbose) {
+        this.context = context;
         this.trickPool = trickPool;
-        this.positions = new SimpleLongIntMap();
+        this.positions = new ConcurrentLongIntMap(positionsCapacity);
+        this.verbose = verbose;
+    }
+
+    // for pondering, shares trickPool and positions with that
+    private TrickList(TrickList that) {
+        this.context = that.context;
+        this.trickPool = that.trickPool;
+        this.positions = that.positions;
+        this.verbose = false;
+        this.targetBot = that.targetBot;
+        this.myNum = that.myNum;
     }
 
     GameManager gameManager() {
-        return GameManager.getInstance();
+        return context.gameManager;
     }
 
     public void initBuild() {
+        builtHands[0] = null;
         nodeIndex = 0;
         if (bestNodes[nodeIndex] == null) {
             return;
@@ -82,7 +244,73 @@ public class TrickList {
         }
     }
 
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    // returns null if the list cannot be built
+    // throws PrefExceptionRerun when cancelled
     public Card getCard(Bot targetBot, Trick trick) {
+        stopPondering();
+        int timeLimit = Config.getInstance().moveTimeLimit.get();
+        progressStart = System.currentTimeMillis();
+        nextProgress = progressStart + PROGRESS_PERIOD;
+        deadline = 0;
+        if (timeLimit > 0) {
+            deadline = progressStart + timeLimit;
+        }
+        try {
+            return _getCard(targetBot, trick);
+        } catch (TrickPoolException e) {
+            printf("%s, list is not built\n", e.getMessage());
+            trickPool.clear();
+            positions.clear();
+            initBuild();
+            return null;
+        } finally {
+            solveTime += System.currentTimeMillis() - progressStart;
+            if (solvedPositions < positions.size()) {
+                solvedPositions = positions.size();
+            }
+            if (progressListener != null) {
+                progressListener.onDone();
+            }
+        }
+    }
+
+    public void resetSolveStatistics() {
+        solveTime = 0;
+        solvedPositions = 0;
+    }
+
+    public long getSolveTime() {
+        return solveTime;
+    }
+
+    public int getSolvedPositions() {
+        return solvedPositions;
+    }
+
+    // called on every 256th complete trick, maybe concurrently
+    private void checkProgress() {
+        if (!timed && progressListener == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (timed && now > deadline) {
+            throw new TimeLimitException();
+        }
+        if (progressListener != null && now >= nextProgress) {
+            nextProgress = now + PROGRESS_PERIOD;
+            progressListener.onProgress(positions.size(), trickPool.size(), now - progressStart);
+        }
+    }
+
+    private Card _getCard(Bot targetBot, Trick trick) {
         if (this.targetBot != targetBot) {
             initBuild(targetBot);
         }
@@ -107,6 +335,10 @@ public class TrickList {
             }
             expected = nodeCardSet.equals(handsCardSet);
             TrickNode nextBestNode = bestNodes[nodeIndex + 1];
+            if (nextBestNode.trickData == 0) {
+                // the list was built to the horizon only
+                expected = false;
+            }
             for (int i = 0; i < trick.size(); ++i) {
                 Card card = trick.getCard(i);
                 if (!card.equals(nextBestNode.getCard(i))) {
@@ -156,11 +388,19 @@ public class TrickList {
         initBuild();
     }
 
+    public TrickPool getTrickPool() {
+        return trickPool;
+    }
+
     public int getEstimate() {
         if (bestNodes[0] == null) {
             return -1;
         }
-        return bestNodes[0].getPastTricks() + bestNodes[0].getFutureTricks();
+        return getEstimate(bestNodes);
+    }
+
+    static int getEstimate(TrickNode[] nodes) {
+        return nodes[0].getPastTricks() + nodes[0].getFutureTricks();
     }
 
     private void rebuild(Bot targetBot, Trick trick) {
@@ -170,7 +410,7 @@ public class TrickList {
         if (gameManager().declarerNumber == trick.getTurn() && bestNodes[nodeIndex].trickData == 0) {
             diff = 0;
         } else {
-            if (!gameManager().discarded.intersection(Bot.playerBid.drops).isEmpty()) {
+            if (!gameManager().discarded.intersection(context.playerBid.drops).isEmpty()) {
                 targetBot.myHand = hand0;
             }
             diff = targetBot.myHand.size() - targetBot.rightHand.size();
@@ -191,9 +431,7 @@ public class TrickList {
         }
 
         // wrong drop guess, let's redo it
-        CardSet drops = new CardSet();
-        int maxSize = TOTAL_RANKS + 1;
-        probesBestNodes[0].trickData = 0;
+        List<Card[]> probes = new ArrayList<>();
         CardSet dropCandidates = new CardSet(hand0);
         Card.Suit trumpSuit = gameManager().getMinBid().getTrump();
         if (trumpSuit != null) {
@@ -203,59 +441,300 @@ public class TrickList {
         int bit0 = 0;
         while ((bit0 = CardSet.next(dropCandidates.getBitmap(), bit0)) != 0) {
             Card card0 = Card.get(bit0);
-            Card.Suit suit0 = card0.getSuit();
             dropCandidates.remove(card0);
             CardSet hand = dropCandidates;
             if (diff == 1) {
                 hand = new CardSet(card0);
             }
-            int turn = (NOP - BaseTrick.getStartedBy(TrickList.bestNodes[0].trickData)) % NOP;
             int bit1 = 0;
             while ((bit1 = CardSet.next(hand.getBitmap(), bit1)) != 0) {
-                Card card1 = Card.get(bit1);
-                Card.Suit suit1 = card1.getSuit();
-                printf("probing drops %s, %s: ", card0.toColorString(), card1.toColorString());
+                probes.add(new Card[] {card0, Card.get(bit1)});
+            }
+        }
+
+        // all probes are subsets of these hands, so they share the positions
+        final CardSet[] allHands = {new CardSet(hand0), targetBot.leftHand, targetBot.rightHand};
+        List<ForkJoinTask<TrickNode[]>> tasks = null;
+        if (PARALLEL_BUILD && targetBot.isDoubleDummy()) {
+            tasks = new ArrayList<>();
+            for (Card[] probe : probes) {
+                final CardSet hand = new CardSet(hand0);
+                hand.remove(probe[0]);
+                hand.remove(probe[1]);
+                tasks.add(getForkJoinPool().submit(() -> probe(targetBot, trick, allHands, hand)));
+            }
+        } else {
+            setKeyMode(targetBot);
+            reserve(allHands);
+        }
+
+        // select in the same order for sequential and parallel probes
+        CardSet drops = new CardSet();
+        int maxSize = TOTAL_RANKS + 1;
+        probesBestNodes[0].trickData = 0;
+        for (int i = 0; i < probes.size(); ++i) {
+            Card card0 = probes.get(i)[0];
+            Card card1 = probes.get(i)[1];
+            printf("probing drops %s, %s: ", card0.toColorString(), card1.toColorString());
+            TrickNode[] probeNodes;
+            if (tasks == null) {
                 hand0.remove(card0);
                 hand0.remove(card1);
-                // check the original lengths
-                int _maxSize = gameManager().initialDeclarerHand.list(suit0).size();
-                int size1 = gameManager().initialDeclarerHand.list(suit1).size();
-                if (_maxSize < size1) {
-                    _maxSize = size1;
-                }
                 // do analysis
                 targetBot.myHand = hand0;
-                build(trick, targetBot.myHand, targetBot.leftHand, targetBot.rightHand);
-                int _diff = -1;
-                if (probesBestNodes[0].trickData != 0) {
-                    _diff = targetBot.compare(probesBestNodes[0].trickData, TrickList.bestNodes[0].trickData, turn);
-                }
-                if (_diff < 0 || _diff == 0 && maxSize > _maxSize) {
-                    drops.clear();
-                    drops.add(card0);
-                    drops.add(card1);
-                    maxSize = _maxSize;
-                    copy(TrickList.bestNodes, probesBestNodes);
+                try {
+                    build(trick, targetBot.myHand, targetBot.leftHand, targetBot.rightHand);
+                } finally {
+                    hand0.add(card1);
+                    hand0.add(card0);
                 }
-                println();
-                hand0.add(card1);
-                hand0.add(card0);
+                probeNodes = bestNodes;
+            } else {
+                probeNodes = tasks.get(i).join();
+                printf("declarer: %d tricks", getEstimate(probeNodes));
+            }
+            // check the original lengths
+            int _maxSize = gameManager().initialDeclarerHand.list(card0.getSuit()).size();
+            int size1 = gameManager().initialDeclarerHand.list(card1.getSuit()).size();
+            if (_maxSize < size1) {
+                _maxSize = size1;
+            }
+            int _diff = -1;
+            if (probesBestNodes[0].trickData != 0) {
+                int turn = (NOP - probeNodes[0].getStartedBy()) % NOP;
+                _diff = targetBot.compare(probesBestNodes[0].trickData, probeNodes[0].trickData, turn);
             }
+            if (_diff < 0 || _diff == 0 && maxSize > _maxSize) {
+                drops.clear();
+                drops.add(card0);
+                drops.add(card1);
+                maxSize = _maxSize;
+                copy(probeNodes, probesBestNodes);
+            }
+            println();
         }
         printf("selecting new drops %s\n", drops.toColorString());
-        Bot.playerBid.drops.clear();
-        Bot.playerBid.drops.add(drops);
+        context.playerBid.drops.clear();
+        context.playerBid.drops.add(drops);
         hand0.remove(drops);
         targetBot.myHand = hand0;   // replace for the newly found cards
-        copy(probesBestNodes, TrickList.bestNodes);
+        copy(probesBestNodes, bestNodes);
+        nodeIndex = 0;
         printf(DEBUG_LOG, "list rebuilt after %s\n", trick);
     }
 
+    // drop probe on a worker TrickList, runs on ForkJoinPool
+    private TrickNode[] probe(Bot targetBot, Trick trick, CardSet[] allHands, CardSet hand) {
+        TrickList trickList = probeTrickLists.poll();
+        if (trickList == null) {
+            trickList = new TrickList(context, trickPool.newPool(), positions.capacity(), false);
+        }
+        trickList.cancellationToken = this.cancellationToken;
+        try {
+            return trickList.buildNodes(targetBot, myNum, trick, allHands, hand, allHands[1], allHands[2]);
+        } finally {
+            probeTrickLists.add(trickList);
+        }
+    }
+
+    // for DoubleDummySolver, buildNodes() and buildCards() throw TimeLimitException after deadline, 0 - no limit
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    // build the list to new nodes, bestNodes and GameManager are not used
+    // myNum is declarer number, allHands are the hands to keep positions for
+    TrickNode[] buildNodes(Bot targetBot, int myNum, Trick trick, CardSet[] allHands, CardSet... hands) {
+        this.targetBot = targetBot;
+        this.myNum = myNum;
+        setKeyMode(targetBot);
+        timed = deadline > 0;
+        try {
+            reserve(allHands);
+            TrickNode[] nodes = new TrickNode[ROUND_SIZE + 1];
+            for (int i = 0; i < nodes.length; ++i) {
+                nodes[i] = new TrickNode();
+            }
+            new TrickNode(nodes, trick, hands);
+            return nodes;
+        } catch (TrickPoolException | TimeLimitException e) {
+            trickPool.clear();
+            positions.clear();
+            builtHands[0] = null;
+            throw e;
+        } finally {
+            timed = false;
+        }
+    }
+
+    // declarer tricks after each of the candidates is added to trick, e.g. for sampled hands;
+    // hands are without the trick cards, the builds share positions as pondering does
+    int[] buildCards(Bot targetBot, int myNum, Trick trick, CardList candidates, CardSet... hands) {
+        this.targetBot = targetBot;
+        this.myNum = myNum;
+        setKeyMode(targetBot);
+        int turn = (trick.getTurn() - myNum + NOP) % NOP;
+        int[] tricks = new int[candidates.size()];
+        timed = deadline > 0;
+        try {
+            reserve(hands);
+            for (int k = 0; k < tricks.length; ++k) {
+                Card card = candidates.get(k);
+                CardSet[] _hands = new CardSet[NOP];
+                for (int i = 0; i < NOP; ++i) {
+                    _hands[i] = new CardSet(hands[i]);
+                }
+                _hands[turn].remove(card);
+                CardList cards = trick.cards2List();
+                cards.add(card);
+                TrickNode[] nodes = new TrickNode[ROUND_SIZE + 1];
+                for (int i = 0; i < nodes.length; ++i) {
+                    nodes[i] = new TrickNode();
+                }
+                new TrickNode(nodes, trick, cards, _hands);
+                tricks[k] = getEstimate(nodes);
+            }
+        } catch (TrickPoolException | TimeLimitException e) {
+            trickPool.clear();
+            positions.clear();
+            builtHands[0] = null;
+            throw e;
+        } finally {
+            timed = false;
+        }
+        return tricks;
+    }
+
+    // called before the human player's turn, for each of his possible cards
+    // builds the list in background, so that getCard() finds its positions built.
+    // The builds stop on stopPondering() when the card is played, or on RestartCommand.
+    // When the next getCard() probes the drops, the pondered positions are not used.
+    public void ponder(Trick trick, CardSet candidates) {
+        stopPondering();
+        if (PONDER_THREADS <= 0 || !context.isPondering() || trick.minBid == null || builtHands[0] == null ||
+                targetBot == null || !targetBot.isDoubleDummy()) {
+            return;
+        }
+        final CardSet[] hands = {new CardSet(targetBot.myHand),
+            new CardSet(targetBot.leftHand), new CardSet(targetBot.rightHand)};
+        int turn = (trick.getTurn() - myNum + NOP) % NOP;
+        setKeyMode(targetBot);
+        reserve(hands);
+        ponderToken = new CancellationToken();
+        final Trick ponderTrick = new Trick(trick);
+        int bit = 0;
+        while ((bit = CardSet.next(candidates.getBitmap(), bit)) != 0) {
+            Card card = Card.get(bit);
+            if (!hands[turn].contains(card)) {
+                continue;   // the hand is guessed wrong
+            }
+            final CardList cards = trick.cards2List();
+            cards.add(card);
+            final CardSet[] ponderHands = new CardSet[NOP];
+            for (int i = 0; i < NOP; ++i) {
+                ponderHands[i] = new CardSet(hands[i]);
+            }
+            ponderHands[turn].remove(card);
+            final TrickList trickList = new TrickList(this);
+            trickList.cancellationToken = ponderToken;
+            PonderTask task = new PonderTask(() -> trickList.ponder(ponderTrick, cards, ponderHands));
+            task.future = getPonderPool().submit(task);
+            ponderTasks.add(task);
+        }
+        printf(DEBUG_LOG, "pondering %d cards\n", ponderTasks.size());
+    }
+
+    // runs on ponderPool
+    private void ponder(Trick trick, CardList cards, CardSet... hands) {
+        setKeyMode(targetBot);
+        TrickNode[] nodes = new TrickNode[ROUND_SIZE + 1];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = new TrickNode();
+        }
+        try {
+            new TrickNode(nodes, trick, cards, hands);
+            printf(DEBUG_LOG, "pondered %s: declarer %d tricks\n", cards, getEstimate(nodes));
+        } catch (Player.PrefExceptionRerun e) {
+            printf(DEBUG_LOG, "pondering %s stopped\n", cards);
+        } catch (TrickPoolException e) {
+            printf("%s, pondering %s stopped\n", e.getMessage(), cards);
+        }
+    }
+
+    // cancel pondering, the queued builds are dropped, wait until the running ones are stopped
+    public void stopPondering() {
+        if (ponderToken != null) {
+            ponderToken.cancel("stop pondering");
+        }
+        for (PonderTask task : ponderTasks) {
+            if (!task.drop()) {
+                task.join();
+            }
+        }
+        ponderTasks.clear();
+        ponderToken = null;
+    }
+
+    // wait until all pondering builds are complete
+    void waitPondering() {
+        for (PonderTask task : ponderTasks) {
+            task.join();
+        }
+        ponderTasks.clear();
+        ponderToken = null;
+    }
+
+    // Future.cancel(false) cannot tell a queued task from a running one,
+    // the one that takes the task first, ponderPool or stopPondering(), decides
+    private static class PonderTask implements Runnable {
+        private final Runnable build;
+        private final AtomicBoolean taken = new AtomicBoolean();
+        private Future<?> future;
+
+        PonderTask(Runnable build) {
+            this.build = build;
+        }
+
+        @Override
+        public void run() {
+            if (taken.compareAndSet(false, true)) {
+                build.run();
+            }
+        }
+
+        // true if the build has not started and now it will not
+        boolean drop() {
+            if (!taken.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+
+        void join() {
+            try {
+                future.get();
+            } catch (CancellationException e) {
+                // dropped
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     private void copy(TrickNode[] sourceNodes, TrickNode[] targetNodes) {
         for (int i = 0; i < targetNodes.length; ++i) {
             targetNodes[i].trickData = sourceNodes[i].trickData;
+            targetNodes[i].number = sourceNodes[i].number;
             for (int j = 0; j < NOP; ++j) {
-                targetNodes[i].hands[j].setBitmap(sourceNodes[i].hands[j].getBitmap());
+                CardSet hand = sourceNodes[i].hands[j];
+                if (hand == null) {
+                    targetNodes[i].hands[j] = null;
+                } else if (targetNodes[i].hands[j] == null) {
+                    targetNodes[i].hands[j] = new CardSet(hand);
+                } else {
+                    targetNodes[i].hands[j].setBitmap(hand.getBitmap());
+                }
             }
         }
     }
@@ -273,12 +752,181 @@ public class TrickList {
 
     private void build(Trick trick, CardSet... hands) {
         similar = 0;
-        trickPool.clear();
-        new TrickNode(trick, hands);
+        endgame = 0;
+        pruned = 0;
+        setKeyMode(targetBot);
+        reserve(hands);
+        if (deadline == 0 || !targetBot.isDoubleDummy()) {
+            parallel = PARALLEL_BUILD && targetBot.isDoubleDummy();
+            new TrickNode(bestNodes, trick, hands);
+        } else {
+            parallel = false;
+            buildToDeadline(trick, hands);
+        }
+        nodeIndex = 0;
+    }
+
+    // iterative deepening, every iteration builds one more trick, the rest is estimated by sureTricks().
+    // The 1st iteration is always complete, so there is a card to play when the time is over.
+    // Only the positions without estimated tricks are kept, they stay valid for the next iterations.
+    private void buildToDeadline(Trick trick, CardSet... hands) {
+        TrickNode[] nodes = new TrickNode[ROUND_SIZE + 1];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = new TrickNode();
+        }
+        try {
+            if (horizonPositions == null) {
+                horizonPositions = new ConcurrentLongIntMap();
+            }
+            for (horizon = trick.getNumber(); horizon < ROUND_SIZE; ++horizon) {
+                frontiers = 0;
+                horizonPositions.clear();
+                try {
+                    new TrickNode(nodes, trick, hands);
+                } catch (TimeLimitException e) {
+                    printf(verbose, "time is over, list built to trick %d\n", horizon - 1);
+                    break;
+                }
+                copy(nodes, bestNodes);
+                if (frontiers == 0) {
+                    break;  // nothing was estimated, the list is complete
+                }
+                timed = true;
+            }
+        } finally {
+            horizon = ROUND_SIZE;
+            timed = false;
+        }
+    }
+
+    private void setKeyMode(Bot targetBot) {
+        canonical = CANONICAL_POSITIONS && targetBot.isDoubleDummy();
+        symmetric = canonical && SUIT_SYMMETRY;
+        bounded = QUICK_TRICKS && targetBot.isDoubleDummy();
+        endgamePositions = null;
+        if (ENDGAME_TRICKS > MAX_ENDGAME_TRICKS) {
+            throw new RuntimeException(String.format("ENDGAME_TRICKS %d > %d", ENDGAME_TRICKS, MAX_ENDGAME_TRICKS));
+        }
+        if (ENDGAME_TRICKS > 0 && targetBot.isDoubleDummy()) {
+            endgamePositions = getEndgameTable(targetBot);
+        }
+    }
+
+    private static ConcurrentLongIntCache getEndgameTable(Bot targetBot) {
+        return endgameTables.computeIfAbsent(targetBot.getClass(),
+            c -> new ConcurrentLongIntCache(ENDGAME_VALUE_BITS));
+    }
+
+    // for tests, the builds in progress keep their tables
+    static void clearEndgameTable() {
+        endgameTables.clear();
+    }
+
+    // the position after the trick is from endgame table, its list is not built.
+    // trickNode can belong to another TrickList, e.g. bestNodes
+    private boolean isInEndgameTable(TrickNode trickNode) {
+        int size = trickNode.hands[0].size();
+        return endgamePositions != null && size > 0 && size <= ENDGAME_TRICKS &&
+            endgamePositions.get(trickNode.getEndgameKey()) != ConcurrentLongIntCache.NULL_VALUE;
+    }
+
+    // keep trickPool and positions if they are valid for the hands,
+    // position keys include the trump suit, so the trump does not matter
+    private void reserve(CardSet... hands) {
+        if (!isBuilt(hands) || builtCanonical != canonical || builtSymmetric != symmetric ||
+                trickPool.size() > TrickPool.MAX_CAPACITY / 2) {
+            trickPool.clear();
+            positions.clear();
+            for (int i = 0; i < NOP; ++i) {
+                builtHands[i] = new CardSet(hands[i]);
+            }
+            builtCanonical = canonical;
+            builtSymmetric = symmetric;
+        }
+    }
+
+    // after an unexpected move the previous positions are reused,
+    // the new root finds them and only unexplored ones get built
+    private boolean isBuilt(CardSet... hands) {
+        if (builtHands[0] == null) {
+            return false;
+        }
+        for (int i = 0; i < NOP; ++i) {
+            if (!builtHands[i].contains(hands[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ForkJoinPool getPonderPool() {
+        if (ponderPool == null) {
+            ponderPool = new ForkJoinPool(PONDER_THREADS);
+        }
+        return ponderPool;
+    }
+
+    private static synchronized ForkJoinPool getForkJoinPool() {
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool();
+        }
+        return forkJoinPool;
+    }
+
+
+    private static final int BUILD = -1;        // openLeaf(): the rest of the list must be built
+    private static final int FRONTIER = -2;     // openLeaf(): the rest of the list is estimated or in endgame table
+
+    // the sequential build never waits for other tasks, so one thread runs one build at a time
+    // and the frames are shared by all its TrickNodes, e.g. by the parallel build leaves
+    private static final ThreadLocal<SearchStack> searchStacks = ThreadLocal.withInitial(SearchStack::new);
+
+    // buildSubList() frames, one per trick, instead of recursion.
+    // The frames below top are used by solveLeaf() of the parallel build
+    static class SearchStack {
+        private Frame[] frames = new Frame[0];
+        int top;
+
+        Frame get(int f) {
+            if (f >= frames.length) {
+                Frame[] _frames = Arrays.copyOf(frames, f + ROUND_SIZE + 1);
+                for (int i = frames.length; i < _frames.length; ++i) {
+                    _frames[i] = new Frame();
+                }
+                frames = _frames;
+            }
+            return frames[f];
+        }
+    }
+
+    // state of one trick in buildSubList(), by card position in trick (level)
+    static class Frame {
+        // restored when the trick is done
+        long trickData;
+        int number;
+        Card.Suit startingSuit;
+        Card topCard;
+
+        int level;      // card position being tried
+        final long[] bm = new long[NOP];
+        final int[] bit = new int[NOP];         // the card being tried
+        final int[] bestNode = new int[NOP];
+        final int[] bestBit = new int[NOP];
+
+        // the complete trick being solved
+        int probeIndex;
+        long key;
+        int frontiers;
     }
 
     class TrickNode extends Trick {
         CardSet[] hands = new CardSet[NOP];
+        int similarCount;
+        int endgameCount;
+        int prunedCount;
+        int choiceCount;
+        int firstBestCount;
+        private final int[] suitCodes = new int[Card.Suit.values().length];
 
         TrickNode() {}
 
@@ -291,19 +939,102 @@ public class TrickList {
             this.setFutureTricks(futureTricks);
         }
 
+        // builds the list for all tricks from this one, returns the best trick index in trickPool.
+        // The tricks are not built recursively, SearchStack frames keep the state of each trick,
+        // and the cards are added to and removed from this in place
         private int buildSubList(CardList cards) {
-            if (this.hands[0].size() <= 0) {
+            SearchStack searchStack = searchStacks.get();
+            int base = searchStack.top;
+            int f = base;
+            Frame frame = searchStack.get(f);
+            if (!this.enterTrick(frame, cards)) {
                 return 0;
             }
+            while (true) {
+                int level = frame.level;
+                int bit = CardSet.next(frame.bm[level], frame.bit[level]);
+                if (bit != 0) {
+                    frame.bit[level] = bit;
+                    Card card = Card.get(bit);
+                    this.add(card);
+                    if (level < NOP - 1) {
+                        frame.level = ++level;
+                        this.startLevel(frame, level, f == base ? cards : null);
+                        continue;
+                    }
+                    // the trick is complete
+                    if (bounded && frame.bestNode[level] != 0 &&
+                            this.cannotReplace(frame.bestNode[level], level)) {
+                        ++prunedCount;
+                        this.removeLast();
+                        continue;
+                    }
+                    int nextIndex = this.openLeaf(frame);
+                    boolean built = nextIndex == BUILD;
+                    if (built) {
+                        Frame next = searchStack.get(f + 1);
+                        if (this.enterTrick(next, null)) {
+                            // solve the next trick, then back to this one
+                            ++f;
+                            frame = next;
+                            continue;
+                        }
+                        nextIndex = 0;
+                    }
+                    int probeIndex = frame.probeIndex;
+                    if (nextIndex != FRONTIER) {
+                        probeIndex = this.closeLeaf(frame, nextIndex, built);
+                    }
+                    this.setLeaf(frame, probeIndex);
+                    continue;
+                }
+
+                // all cards for this level are tried
+                this.countChoice(frame.bm[level], frame.bestBit[level]);
+                if (level > 0) {
+                    --level;
+                    if (compare(frame.bestNode[level], frame.bestNode[level + 1], level) < 0) {
+                        frame.bestNode[level] = frame.bestNode[level + 1];
+                        frame.bestBit[level] = frame.bit[level];
+                    }
+                    this.removeLast();
+                    frame.level = level;
+                    continue;
+                }
+
+                // the trick is done, restore this:
+                int bestNode = frame.bestNode[0];
+                this.setTrickData(frame.trickData);
+                this.setNumber(frame.number);
+                this.number = frame.number;
+                this.startingSuit = frame.startingSuit;
+                this.topCard = frame.topCard;
+                if (f == base) {
+                    return bestNode;
+                }
+                frame = searchStack.get(--f);
+                this.setLeaf(frame, this.closeLeaf(frame, bestNode, true));
+            }
+        }
+
+        // start a new trick in frame, false if there are no cards
+        private boolean enterTrick(Frame frame, CardList cards) {
+            if (this.hands[0].size() <= 0) {
+                return false;
+            }
+            CancellationToken cancellationToken = TrickList.this.cancellationToken;
+            if (cancellationToken != null) {
+                cancellationToken.check();
+            }
 if (cards == null) {
     if (hands[0].size() != hands[1].size() || hands[0].size() != hands[2].size()) {
         throw new RuntimeException("err!");
     }
 }
-            long trickData = this.trickData;
-            int trickNum = this.number;
-            Card.Suit startingSuit = this.startingSuit;
-            Card topCard = this.topCard;
+            frame.trickData = this.trickData;
+            frame.number = this.number;
+            frame.startingSuit = this.startingSuit;
+            frame.topCard = this.topCard;
 
             this.clear();
 
@@ -320,45 +1051,230 @@ if (cards == null) {
             boolean dir1 = targetBot.compare(lowExtreme, highExtreme, 1) < 0;
             boolean dir2 = targetBot.compare(lowExtreme, highExtreme, 2) < 0;
 */
-            int bestNode0 = 0;
+
+            frame.level = 0;
+            this.startLevel(frame, 0, cards);
+            return true;
+        }
+
+        private void startLevel(Frame frame, int level, CardList cards) {
+            frame.bestNode[level] = 0;
+            frame.bestBit[level] = 0;
+            frame.bm[level] = this.bm4Iteration(cards);
+            frame.bit[level] = 0;
+        }
+
+        // the last card of the complete trick is solved, its trick index is probeIndex
+        private void setLeaf(Frame frame, int probeIndex) {
+            int level = NOP - 1;
+            if (compare(frame.bestNode[level], probeIndex, level) < 0) {
+                frame.bestNode[level] = probeIndex;
+                frame.bestBit[level] = frame.bit[level];
+            }
+            this.removeLast();
+        }
+
+        // the trick is complete, find or build the rest of the list
+        // returns the trick index in trickPool.
+        // Used by the parallel build, the sequential one does the same in buildSubList()
+        private int solveLeaf(int depth) {
+            SearchStack searchStack = searchStacks.get();
+            int f = searchStack.top++;
+            try {
+                Frame frame = searchStack.get(f);
+                int nextIndex = this.openLeaf(frame);
+                if (nextIndex == FRONTIER) {
+                    return frame.probeIndex;
+                }
+                boolean built = nextIndex == BUILD;
+                if (built) {
+                    if (depth > 0) {
+                        nextIndex = this.buildSubListParallel(null, depth);
+                    } else {
+                        nextIndex = this.buildSubList(null);
+                    }
+                }
+                return this.closeLeaf(frame, nextIndex, built);
+            } finally {
+                searchStack.top = f;
+            }
+        }
+
+        // the trick is complete, allocate it and find its position,
+        // returns the next trick index when the position is known,
+        // FRONTIER when the rest is not built, its tricks are estimated or taken from the endgame table,
+        // or BUILD when it must be built
+        private int openLeaf(Frame frame) {
+            long probeData = this.getTrickData();
+            int probeIndex = trickPool.alloc(probeData);
+            frame.probeIndex = probeIndex;
+            boolean exactKey = this.isEndgame();
+            long key;
+            if (exactKey) {
+                key = this.getEndgameKey();
+            } else {
+                key = this.getPositionKey();
+            }
+            frame.key = key;
+            frame.frontiers = frontiers;
+            int oldIndex = 0;
+            if (key != 0 && !exactKey) {
+                oldIndex = positions.get(key);
+                if (oldIndex == 0 && horizon < ROUND_SIZE) {
+                    oldIndex = horizonPositions.get(key);
+                    if (oldIndex != 0) {
+                        ++frontiers;    // the rest is estimated too
+                    }
+                }
+            }
+            if ((++leafCount & 0xff) == 0) {
+                checkProgress();
+            }
+            if (exactKey) {
+                int tricks = endgamePositions.get(key);
+                if (tricks != ConcurrentLongIntCache.NULL_VALUE) {
+                    ++endgameCount;
+                    probeData = setFutureTricks(probeData, tricks - 1);
+                    trickPool.set(probeIndex, probeData);
+                    return FRONTIER;
+                }
+            }
+            if (oldIndex == 0 && this.number >= horizon && this.hands[0].size() > 0) {
+                // the middle between the declarer's and the defenders' sure tricks
+                ++frontiers;
+                int minTricks = this.sureTricks(0);
+                int maxTricks = this.hands[0].size() - this.sureTricks(1);
+                probeData = setFutureTricks(probeData, (minTricks + maxTricks) / 2);
+                trickPool.set(probeIndex, probeData);
+                return FRONTIER;
+            }
+            if (oldIndex == 0) {
+                return BUILD;
+            }
+            ++similarCount;
+            return getNextIndex(trickPool.get(oldIndex));
+        }
+
+        // the rest of the list for the complete trick is nextIndex,
+        // returns the trick index in trickPool
+        private int closeLeaf(Frame frame, int nextIndex, boolean built) {
+            int probeIndex = frame.probeIndex;
+            long probeData = setNextIndex(trickPool.get(probeIndex), nextIndex);
+            if (nextIndex != 0) {
+                long nextTrickData = trickPool.get(nextIndex);
+                int futureTricks = getFutureTricks(nextTrickData);
+                if (getTop(nextTrickData) == 0) {
+                    ++futureTricks;
+                }
+                probeData = setFutureTricks(probeData, futureTricks);
+            }
+            trickPool.set(probeIndex, probeData);
+            // the position is stored when completely built,
+            // so other threads never see it unfinished
+            if (built && frame.key != 0) {
+                if (this.isEndgame()) {
+                    if (frontiers == frame.frontiers) {
+                        // 0 is for no value
+                        endgamePositions.put(frame.key, getFutureTricks(probeData) + 1);
+                    }
+                } else if (frontiers == frame.frontiers) {
+                    positions.put(frame.key, probeIndex);
+                } else {
+                    horizonPositions.put(frame.key, probeIndex);
+                }
+            }
+            return probeIndex;
+        }
+
+        // the same as buildSubList(), but the complete tricks are built by ForkJoinPool workers,
+        // each on its own copy of TrickNode. The results are merged in the same order
+        // as buildSubList() does, so the best list is exactly the same.
+        private int buildSubListParallel(CardList cards, int depth) {
+            if (this.hands[0].size() <= 0) {
+                return 0;
+            }
+            CancellationToken cancellationToken = TrickList.this.cancellationToken;
+            if (cancellationToken != null) {
+                cancellationToken.check();
+            }
+            long trickData = this.trickData;
+            int trickNum = this.number;
+            Card.Suit startingSuit = this.startingSuit;
+            Card topCard = this.topCard;
+
+            this.clear();
+            CardList mergeCards = null;
+            if (cards != null) {
+                mergeCards = new CardList(cards);
+            }
+
+            // collect all complete tricks
+            final List<RecursiveTask<Integer>> tasks = new ArrayList<>();
+            final List<TrickNode> leaves = new ArrayList<>();
             long bm0 = this.bm4Iteration(cards);
             int bit0 = 0;
             while ((bit0 = CardSet.next(bm0, bit0)) != 0) {
-                Card card0 = Card.get(bit0);
-                this.add(card0);
-                int bestNode1 = 0;
+                this.add(Card.get(bit0));
                 long bm1 = this.bm4Iteration(cards);
                 int bit1 = 0;
                 while ((bit1 = CardSet.next(bm1, bit1)) != 0) {
-                    Card card1 = Card.get(bit1);
-                    this.add(card1);
-                    int bestNode2 = 0;
+                    this.add(Card.get(bit1));
                     long bm2 = this.bm4Iteration(cards);
                     int bit2 = 0;
                     while ((bit2 = CardSet.next(bm2, bit2)) != 0) {
-                        Card card2 = Card.get(bit2);
-                        this.add(card2);
-                        int probeIndex = trickPool.alloc(this.getTrickData());
-                        long probeData = this.getTrickData();
-                        int oldIndex;
-                        int nextIndex;
-                        if ((oldIndex = this.addPosition(probeIndex)) == 0) {
-                            nextIndex = this.buildSubList(null);
-                        } else {
-                            ++similar;
-                            long oldData = trickPool.get(oldIndex);
-                            nextIndex = getNextIndex(oldData);
-                        }
-                        probeData = setNextIndex(probeData, nextIndex);
-                        if (nextIndex != 0) {
-                            long nextTrickData = trickPool.get(nextIndex);
-                            int futureTricks = getFutureTricks(nextTrickData);
-                            if (getTop(nextTrickData) == 0) {
-                                ++futureTricks;
+                        this.add(Card.get(bit2));
+                        final TrickNode leaf = new TrickNode();
+                        leaf.init(this);
+                        leaves.add(leaf);
+                        tasks.add(new RecursiveTask<Integer>() {
+                            @Override
+                            protected Integer compute() {
+                                return leaf.solveLeaf(depth - 1);
                             }
-                            probeData = setFutureTricks(probeData, futureTricks);
-                        }
-                        trickPool.set(probeIndex, probeData);
+                        });
+                        this.removeLast();   // remove 2
+                    }
+                    this.removeLast();   // remove 1
+                }
+                this.removeLast();   // remove 0
+            }
+
+            RecursiveAction all = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            };
+            if (ForkJoinTask.inForkJoinPool()) {
+                all.invoke();
+            } else {
+                getForkJoinPool().invoke(all);
+            }
+
+            // merge
+            int k = 0;
+            int bestNode0 = 0;
+            bm0 = this.bm4Iteration(mergeCards);
+            bit0 = 0;
+            while ((bit0 = CardSet.next(bm0, bit0)) != 0) {
+                this.add(Card.get(bit0));
+                int bestNode1 = 0;
+                long bm1 = this.bm4Iteration(mergeCards);
+                int bit1 = 0;
+                while ((bit1 = CardSet.next(bm1, bit1)) != 0) {
+                    this.add(Card.get(bit1));
+                    int bestNode2 = 0;
+                    long bm2 = this.bm4Iteration(mergeCards);
+                    int bit2 = 0;
+                    while ((bit2 = CardSet.next(bm2, bit2)) != 0) {
+                        this.add(Card.get(bit2));
+                        int probeIndex = tasks.get(k).join();
+                        this.similarCount += leaves.get(k).similarCount;
+                        this.endgameCount += leaves.get(k).endgameCount;
+                        this.prunedCount += leaves.get(k).prunedCount;
+                        this.choiceCount += leaves.get(k).choiceCount;
+                        this.firstBestCount += leaves.get(k).firstBestCount;
+                        ++k;
                         if (compare(bestNode2, probeIndex, 2) < 0) {
                             bestNode2 = probeIndex;
                         }
@@ -377,12 +1293,85 @@ if (cards == null) {
             // restore this:
             this.setTrickData(trickData);
             this.setNumber(trickNum);
-            this.number = trickNum;
             this.startingSuit = startingSuit;
             this.topCard = topCard;
             return bestNode0;
         }
 
+        // the trick is complete, true if whatever the rest of the list is,
+        // compare() will not prefer this trick to bestSoFarIndex
+        private boolean cannotReplace(int bestSoFarIndex, int turn) {
+            long bestSoFar = trickPool.get(bestSoFarIndex);
+            int minTricks = this.sureTricks(0);
+            int maxTricks = this.hands[0].size() - this.sureTricks(1);
+            return targetBot.compare(bestSoFar, setFutureTricks(this.trickData, minTricks), turn) >= 0 &&
+                targetBot.compare(bestSoFar, setFutureTricks(this.trickData, maxTricks), turn) >= 0;
+        }
+
+        // statistics for the candidates order, see 'first best' in the build log
+        private void countChoice(long bm, int bestBit) {
+            int first = CardSet.next(bm, 0);
+            if (CardSet.next(bm, first) == 0) {
+                return;
+            }
+            ++choiceCount;
+            if (bestBit == first) {
+                ++firstBestCount;
+            }
+        }
+
+        // on trick boundary, tricks that declarer (side == 0) or defenders (side == 1)
+        // take whatever the others do
+        private int sureTricks(int side) {
+            int leader = this.getTop();
+            int declarer = hands[0].getBitmap();
+            int defenders = hands[1].getBitmap() | hands[2].getBitmap();
+            int trumpMask = CardSet.suitMask(trumpSuit);
+            int res = 0;
+            if (trumpSuit != null) {
+                if (side == 0) {
+                    res = masters(declarer & trumpMask, defenders & trumpMask);
+                } else {
+                    // each trump over declarer's ones wins, but both defenders can be forced to play them together
+                    int declarerTrumps = declarer & trumpMask;
+                    res = Math.max(masters(hands[1].getBitmap() & trumpMask, declarerTrumps),
+                        masters(hands[2].getBitmap() & trumpMask, declarerTrumps));
+                }
+            }
+            if ((leader == 0) == (side == 0)) {
+                // the leader cashes his masters
+                int cash = 0;
+                int leaderHand = hands[leader].getBitmap();
+                int others = (declarer | defenders) & ~leaderHand;
+                for (int mask : CardSet.suitMasks) {
+                    int n = masters(leaderHand & mask, others & mask);
+                    if (trumpSuit != null && mask != trumpMask) {
+                        // until somebody with trumps gets void, then he must trump,
+                        // even the partner, and the lead is lost
+                        for (int i = 0; i < NOP; ++i) {
+                            if (i != leader && (hands[i].getBitmap() & trumpMask) != 0) {
+                                n = Math.min(n, Integer.bitCount(hands[i].getBitmap() & mask));
+                            }
+                        }
+                    }
+                    cash += n;
+                }
+                if (res < cash) {
+                    res = cash;
+                }
+            }
+            return res;
+        }
+
+        // cards in suit that are higher than all others
+        private int masters(int suitBits, int othersBits) {
+            if (othersBits == 0) {
+                return Integer.bitCount(suitBits);
+            }
+            int highest = Integer.highestOneBit(othersBits);
+            return Integer.bitCount(suitBits & -(highest << 1));
+        }
+
         private long bm4Iteration(CardList cards) {
             if (cards != null && !cards.isEmpty()) {
                 Card card = cards.removeFirst();
@@ -391,17 +1380,32 @@ if (cards == null) {
             return targetBot.bm4Iteration(this);
         }
 
-        // create root and list of tricks
-        private TrickNode(Trick trick, CardSet... hands) {
+        // create root and list of tricks, the list goes to resultNodes
+        private TrickNode(TrickNode[] resultNodes, Trick trick, CardSet... hands) {
+            this(resultNodes, trick, trick.cards2List(), hands);
+        }
+
+        // cards are the cards played in trick
+        private TrickNode(TrickNode[] resultNodes, Trick trick, CardList cards, CardSet... hands) {
             this.setTop((trick.getStartedBy() - myNum + NOP) % NOP);
             this.setStartedBy(this.getTop());
             this.minBid = trick.minBid;
             init(hands);
             this.setNumber(trick.getNumber() - 1);
-            printf("analyzing: %s\n", CardSet.toString(hands));
+            printf(verbose, "analyzing: %s\n", CardSet.toString(hands));
 
             start = System.currentTimeMillis();
-            int nextIndex = buildSubList(trick.cards2List());
+            int nextIndex;
+            if (parallel) {
+                nextIndex = buildSubListParallel(cards, PARALLEL_DEPTH);
+            } else {
+                nextIndex = buildSubList(cards);
+            }
+            similar = similarCount;
+            endgame = endgameCount;
+            pruned = prunedCount;
+            choices = choiceCount;
+            firstBest = firstBestCount;
             long nextTrickData = trickPool.get(nextIndex);
             int pastTricks = getPastTricks(nextTrickData);
             this.setPastTricks(pastTricks);
@@ -409,11 +1413,11 @@ if (cards == null) {
             StringBuilder sb = new StringBuilder();
             String sep = "[";
             int k = 0;
-            bestNodes[k].init(this);
+            resultNodes[k].init(this);
             while (nextIndex != 0) {
                 nextTrickData = trickPool.get(nextIndex);
-                TrickNode trickNode = bestNodes[k];
-                TrickNode nextTrickNode = bestNodes[++k];
+                TrickNode trickNode = resultNodes[k];
+                TrickNode nextTrickNode = resultNodes[++k];
                 nextTrickNode.init(trickNode);
                 nextTrickNode.clear();
                 pastTricks = nextTrickNode.getPastTricks();
@@ -425,31 +1429,34 @@ if (cards == null) {
                 sb.append(sep).append(nextTrickNode);
                 sep = ", ";
                 nextIndex = getNextIndex(nextTrickData);
+                if (canonical && nextIndex != 0 || nextIndex == 0 && isInEndgameTable(nextTrickNode)) {
+                    // the rest of the list can be found for other played cards,
+                    // find the best trick for the actual ones, the next positions are already known.
+                    // With no list, the position is from endgame table, the next ones are there too
+                    TrickNode node = new TrickNode();
+                    node.init(nextTrickNode);
+                    node.setFutureTricks(0);   // the tricks are counted from this one
+                    nextIndex = node.buildSubList(null);
+                }
+            }
+            if (k + 1 < resultNodes.length) {
+                // the end mark for the list built to the horizon
+                resultNodes[k + 1].trickData = 0;
             }
-            bestNodes[0].setFutureTricks(this.getFutureTricks() + targetBot.getTricks());
+            resultNodes[0].setFutureTricks(this.getFutureTricks() + targetBot.getTricks());
             long dur = System.currentTimeMillis() - start;
-            printf("list build duration: %,d msec, positions %,d, similar %,d\n",
-                dur, positions.size(), similar);
-            if (PRINT_BEST_PATH) {
+            printf(verbose, "list build duration: %,d msec, positions %,d, similar %,d, endgame %,d, pruned %,d, first best %d%%\n",
+                dur, positions.size(), similar, endgame, pruned, choices == 0 ? 100 : 100 * firstBest / choices);
+            if (PRINT_BEST_PATH && verbose) {
                 sb.append("]");
                 println(sb);
-                printf("declarer: %d tricks\n", getEstimate());
+                printf("declarer: %d tricks\n", getEstimate(resultNodes));
             }
 
-            if (maxPositions < positions.size()) {
-                maxPositions = positions.size();
-            }
-            if (maxListBuildTime < dur) {
-                maxListBuildTime = dur;
-            }
-            if (maxSimilar < similar) {
-                maxSimilar = similar;
-            }
-            if (maxPoolCount < trickPool.size()) {
-                maxPoolCount = trickPool.size();
-            }
-            positions.clear();
-            nodeIndex = 0;
+            maxPositions.accumulate(positions.size());
+            maxListBuildTime.accumulate(dur);
+            maxSimilar.accumulate(similar);
+            maxPoolCount.accumulate(trickPool.size());
         }
 
         void init(TrickNode that) {
@@ -464,7 +1471,11 @@ if (cards == null) {
         }
 
         private void init(CardSet... hands) {
-            this.trumpSuit = gameManager().minBid.getTrump();
+            Config.Bid minBid = this.minBid;
+            if (minBid == null) {
+                minBid = gameManager().minBid;
+            }
+            this.trumpSuit = minBid.getTrump();
             this.hands = new CardSet[hands.length];
             for (int i = 0; i < hands.length; ++i) {
                 CardSet hand = hands[i];
@@ -472,17 +1483,84 @@ if (cards == null) {
             }
         }
 
-        public int addPosition(int probeIndex) {
-            int bitmap = CardSet.union(hands).getBitmap();
+        // 0 when no cards left
+        long getPositionKey() {
+            int bitmap = hands[0].getBitmap() | hands[1].getBitmap() | hands[2].getBitmap();
             if (bitmap == 0) {
                 return 0;
             }
-            long key = ((long)this.getTop() << 32) | (bitmap & 0x0ffffffffL);
-            int res = positions.get(key);
-            if (res == 0) {
-                positions.put(key, probeIndex);
+            long trump = 0;
+            if (trumpSuit != null) {
+                trump = trumpSuit.getValue() + 1;
             }
-            return res;
+            if (!canonical) {
+                return (trump << 34) | ((long)this.getTop() << 32) | (bitmap & 0x0ffffffffL);
+            }
+            // for each suit: number of cards and their owners from the lowest one, 4 * 14 bits
+            int bitmap1 = hands[1].getBitmap();
+            int bitmap2 = hands[2].getBitmap();
+            for (int i = 0; i < suitCodes.length; ++i) {
+                int shift = i * TOTAL_RANKS;
+                suitCodes[i] = suitCode((bitmap >>> shift) & 0xff,
+                    (bitmap1 >>> shift) & 0xff, (bitmap2 >>> shift) & 0xff);
+            }
+            if (symmetric) {
+                // the same position for any suit permutation, the trump can be only the trump
+                int from = 0;
+                if (trumpSuit != null) {
+                    trump = 1;
+                    int code = suitCodes[trumpSuit.getValue()];
+                    suitCodes[trumpSuit.getValue()] = suitCodes[0];
+                    suitCodes[0] = code;
+                    from = 1;
+                }
+                for (int i = from + 1; i < suitCodes.length; ++i) {
+                    int code = suitCodes[i];
+                    int j = i - 1;
+                    while (j >= from && suitCodes[j] > code) {
+                        suitCodes[j + 1] = suitCodes[j];
+                        --j;
+                    }
+                    suitCodes[j + 1] = code;
+                }
+            }
+            long key = (trump << 2) | this.getTop();
+            for (int code : suitCodes) {
+                key = (key << SUIT_CODE_LENGTH) | code;
+            }
+            return key;
+        }
+
+        private boolean isEndgame() {
+            int size = hands[0].size();
+            return endgamePositions != null && size > 0 && size <= ENDGAME_TRICKS;
+        }
+
+        // exact position for endgame table: trump, top, owners of the remaining cards and the cards
+        long getEndgameKey() {
+            int bitmap = hands[0].getBitmap() | hands[1].getBitmap() | hands[2].getBitmap();
+            int bitmap1 = hands[1].getBitmap();
+            int bitmap2 = hands[2].getBitmap();
+            long owners = 0;
+            for (int i = 0; i < suitCodes.length; ++i) {
+                int shift = i * TOTAL_RANKS;
+                int rem = (bitmap >>> shift) & 0xff;
+                owners = owners * POW3[Integer.bitCount(rem)] +
+                    TERNARY[COMPRESS[rem << TOTAL_RANKS | (bitmap1 >>> shift) & 0xff] & 0xff] +
+                    2 * TERNARY[COMPRESS[rem << TOTAL_RANKS | (bitmap2 >>> shift) & 0xff] & 0xff];
+            }
+            long trump = 0;
+            if (trumpSuit != null) {
+                trump = trumpSuit.getValue() + 1;
+            }
+            return (trump << 58) | ((long)this.getTop() << 56) | (owners << 32) | (bitmap & 0x0ffffffffL);
+        }
+
+        // owners of the remaining cards as base 3 number, hands[0] is 0
+        private int suitCode(int rem, int bits1, int bits2) {
+            rem <<= TOTAL_RANKS;
+            return SUIT_CODE_OFFSET[Integer.bitCount(rem)] +
+                TERNARY[COMPRESS[rem | bits1] & 0xff] + 2 * TERNARY[COMPRESS[rem | bits2] & 0xff];
         }
 
         @Override
@@ -543,12 +1621,36 @@ if (cards == null) {
     }
 
     public interface TrickPool {
-        int DEFAULT_CAPACITY = 7000000;
+        int MAX_CAPACITY = BaseTrick.MAX_INDEX + 1;     // nextIndex is 24 bits
+        TrickPool newPool();                            // empty pool of the same size for a parallel worker
         void clear();
         int alloc(long trickData);
         void set(int index, long trickData);
         long get(int index);
         int size();
         int capacity();
+        int highWaterMark();
+    }
+
+    // called from the building thread or ForkJoinPool workers
+    public interface ProgressListener {
+        // every PROGRESS_PERIOD msec while a card is being found, elapsed since getCard() start
+        void onProgress(int positions, int poolSize, long elapsed);
+        // getCard() is over, found, failed or cancelled
+        void onDone();
+    }
+
+    // the deal is too big for the pool, the caller should use a simpler logic
+    public static class TrickPoolException extends RuntimeException {
+        public TrickPoolException(String message) {
+            super(message);
+        }
+    }
+
+    // stops an iteration of buildToDeadline(), or buildNodes() and buildCards() after setDeadline()
+    static class TimeLimitException extends RuntimeException {
+        TimeLimitException() {
+            super(null, null, false, false);
+        }
     }
 }
\ No newline at end of file
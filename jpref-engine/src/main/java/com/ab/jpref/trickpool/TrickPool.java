@@ -18,56 +18,108 @@
  * Created: 5/31/26
  *
  * Trick pool used to avoid excessive memory fragmentation
+ * Segments are allocated on demand and reused after clear()
  */
 
 package com.ab.jpref.trickpool;
 
 import com.ab.jpref.engine.TrickList;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class TrickPool implements TrickList.TrickPool {
+    public static final int SEGMENT_SIZE_LEN = 16;
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_SIZE_LEN;      // 512 KB
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
 
-    private final long[] trickPool;
-    public int nextPoolIndex;
+    private final int maxCapacity;
+    private final long[][] segments;
+    private int allocatedSegments;
+    // atomic for parallel TrickList build
+    public final AtomicInteger nextPoolIndex = new AtomicInteger();
+    private int highWaterMark;
 
     public TrickPool() {
-        this(DEFAULT_CAPACITY);
+        this(MAX_CAPACITY);
     }
 
-    public TrickPool(int capacity) {
-        trickPool = new long[capacity];
+    public TrickPool(int maxCapacity) {
+        if (maxCapacity > MAX_CAPACITY) {
+            maxCapacity = MAX_CAPACITY;
+        }
+        this.maxCapacity = maxCapacity;
+        segments = new long[(maxCapacity + SEGMENT_SIZE - 1) >>> SEGMENT_SIZE_LEN][];
+    }
+
+    @Override
+    public TrickPool newPool() {
+        return new TrickPool(maxCapacity);
     }
 
     @Override
     public void clear() {
-        nextPoolIndex = 0;
+        int size = size();
+        if (highWaterMark < size) {
+            highWaterMark = size;
+        }
+        nextPoolIndex.set(0);
     }
 
     @Override
     public int alloc(long trickData) {
-        if (nextPoolIndex >= trickPool.length) {
-            throw new RuntimeException("exceeded trick pool size " + trickPool.length);
+        int index = nextPoolIndex.incrementAndGet();
+        if (index >= maxCapacity) {
+            throw new TrickList.TrickPoolException("exceeded trick pool size " + maxCapacity);
+        }
+        long[] segment = segments[index >>> SEGMENT_SIZE_LEN];
+        if (segment == null) {
+            segment = allocSegment(index >>> SEGMENT_SIZE_LEN);
         }
-        trickPool[++nextPoolIndex] = trickData;
-        return nextPoolIndex;
+        segment[index & SEGMENT_MASK] = trickData;
+        return index;
+    }
+
+    private synchronized long[] allocSegment(int segmentIndex) {
+        long[] segment = segments[segmentIndex];
+        if (segment == null) {
+            try {
+                segment = new long[SEGMENT_SIZE];
+            } catch (OutOfMemoryError e) {
+                throw new TrickList.TrickPoolException("out of memory for trick pool, size " + nextPoolIndex.get());
+            }
+            segments[segmentIndex] = segment;
+            ++allocatedSegments;
+        }
+        return segment;
     }
 
     @Override
     public void set(int index, long trickData) {
-        trickPool[index] = trickData;
+        segments[index >>> SEGMENT_SIZE_LEN][index & SEGMENT_MASK] = trickData;
     }
 
     @Override
     public long get(int index) {
-        return trickPool[index];
+        return segments[index >>> SEGMENT_SIZE_LEN][index & SEGMENT_MASK];
     }
 
     @Override
     public int size() {
-        return nextPoolIndex;
+        return nextPoolIndex.get();
     }
 
+    // allocated
     @Override
-    public int capacity() {
-        return trickPool.length;
+    public synchronized int capacity() {
+        return allocatedSegments * SEGMENT_SIZE;
+    }
+
+    @Override
+    public int highWaterMark() {
+        int size = size();
+        if (highWaterMark < size) {
+            return size;
+        }
+        return highWaterMark;
     }
 }
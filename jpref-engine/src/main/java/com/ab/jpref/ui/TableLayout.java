@@ -52,7 +52,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 
-public class TableLayout<T> implements GameManager.EventObserver {
+public class TableLayout<T> implements GameManager.EventObserver, TrickList.ProgressListener {
     public static final boolean DEBUG_LOG = false;
 
     public enum ButtonCommand {
@@ -1111,8 +1111,20 @@ public class TableLayout<T> implements GameManager.EventObserver {
         GameManager.getInstance().restart(GameManager.RestartCommand.offer);
     }
 
+    @Override
+    public void onProgress(int positions, int poolSize, long elapsed) {
+        gui.showProgress(String.format("%s %d.%d s, %,d, %d%%", m("Thinking"),
+            elapsed / 1000, elapsed % 1000 / 100, positions, 100L * poolSize / TrickList.TrickPool.MAX_CAPACITY));
+    }
+
+    @Override
+    public void onDone() {
+        gui.showProgress(null);
+    }
+
     public interface GUI<T> {
         void update();
+        void showProgress(String text);     // null to hide, called from a bot thread
         void paint(T graphics, Card card, int x, int y);
         void paintBack(T graphics, int x, int y);
         void add(Widget widget);
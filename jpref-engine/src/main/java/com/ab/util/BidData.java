@@ -22,7 +22,6 @@
 
 package com.ab.util;
 
-import com.ab.jpref.cards.CardList;
 import static com.ab.jpref.config.Config.NOP;
 import static com.ab.jpref.config.Config.Bid;
 import com.ab.jpref.cards.Card;
@@ -39,11 +38,28 @@ import static com.ab.jpref.cards.Card.TOTAL_SUITS;
 
 public class BidData {
     private static final boolean DEBUG_LOG = false;
+    private static final Suit[] SUITS = Suit.values();
+    // suit slots in a hand pattern: count << 40 | suit << (32 + 2 * i) | (pattern + 1) << (24 - 8 * i)
+    private static final int PATTERN_BITS = 8;
+    private static final int SUIT_SHIFT = 32;
+    private static final int COUNT_SHIFT = 40;
+    // pattern sort key: (pattern + 1) << 10 | rank bits << 2 | (3 - suit)
+    private static final int MAX_PATTERNS = (1 << 6) - 1;
+    public static boolean CACHE_BIDS = true;
+    public static int BID_CACHE_SIZE = 1 << 14;
 
-    private final Map<String, OneBid[]> allBidData = loadBidData("utyatsky-12");
     public final List<Pair<String, int[]>> tricks = loadTricks("tricks");
-    final List<Card> added = new ArrayList<>();
+    // suit patterns: matched tricks table chunks or just suit lengths, ascending
+    private final String[] patterns;
+    // for each suit rank bitmap
+    private final int[] suitPatterns = new int[1 << CardSet.SUIT_LIST_LENGTH];
+    private final int[] suitTricks = new int[NOP << CardSet.SUIT_LIST_LENGTH];
+    // Utyatsky's table by hand pattern keys, ascending
+    private final int[] bidKeys;
+    private final OneBid[][] bidValues;
     final OneBid[] allBids = new OneBid[6];
+    // (hand, minBid, elderHand, nDrops) -> value << 32 | drops
+    private final ClockCache bidCache = new ClockCache(BID_CACHE_SIZE);
 
     private static class Holder {
         static final BidData instance = new BidData();
@@ -53,17 +69,60 @@ public class BidData {
         return Holder.instance;
     }
 
-    private BidData() {}
+    private BidData() {
+        String[] chunks = new String[suitPatterns.length];
+        Set<String> names = new TreeSet<>();
+        for (int bits = 1; bits < chunks.length; ++bits) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = CardSet.SUIT_LIST_LENGTH - 1; i >= 0; --i) {
+                if ((bits & (1 << i)) != 0) {
+                    sb.append(String.format("%X", Rank.SEVEN.getValue() + i));
+                }
+            }
+            String chunk = new String(sb);
+            int index = searchTricks(chunk);
+            if (index < 0) {
+                chunks[bits] = "" + chunk.length();
+            } else {
+                chunks[bits] = tricks.get(index).first;
+                for (int turn = 0; turn < NOP; ++turn) {
+                    suitTricks[bits * NOP + turn] = tricks.get(index).second[turn];
+                }
+            }
+            names.add(chunks[bits]);
+        }
+        if (names.size() > MAX_PATTERNS) {
+            throw new RuntimeException(String.format("too many suit patterns %d, max %d", names.size(), MAX_PATTERNS));
+        }
+        patterns = names.toArray(new String[0]);
+        for (int bits = 1; bits < chunks.length; ++bits) {
+            suitPatterns[bits] = Arrays.binarySearch(patterns, chunks[bits]);
+        }
+
+        Map<Integer, OneBid[]> data = loadBidData("utyatsky-12");
+        bidKeys = new int[data.size()];
+        bidValues = new OneBid[data.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, OneBid[]> entry : data.entrySet()) {
+            bidKeys[i] = entry.getKey();
+            bidValues[i] = entry.getValue();
+            ++i;
+        }
+    }
 
-    private Map<String, OneBid[]> loadBidData(String resourceName) {
-        Map<String, OneBid[]> data = new HashMap<>();
+    private Map<Integer, OneBid[]> loadBidData(String resourceName) {
+        Map<Integer, OneBid[]> data = new TreeMap<>();
         ClassLoader classloader = Thread.currentThread().getContextClassLoader();
         try (InputStream is = classloader.getResourceAsStream("jpref/" + resourceName);
             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
             String line;
             while ((line = br.readLine()) != null) {
                 String[] parts = line.split(": | -> ");
-                String key = parts[1];
+                int key = toKey(parts[1]);
+                if (key == 0) {
+                    Logger.println(DEBUG_LOG, "no such hand pattern: " + line);
+                    continue;
+                }
                 String[] bidParts = parts[2].substring(1, parts[2].length() - 1).split(", |\\[|]");
                 OneBid[] allBids = new OneBid[6];
                 int i = -1;
@@ -90,6 +149,26 @@ public class BidData {
         return data;
     }
 
+    // Utyatsky's key, e.g. 7E3EDC2, to the hand pattern key, 0 if some chunk is not a pattern
+    private int toKey(String handChunks) {
+        int key = 0;
+        int i = 0;
+        int start = 0;
+        while (start < handChunks.length()) {
+            int end = start + 1;
+            while (end < handChunks.length() && !Character.isDigit(handChunks.charAt(end))) {
+                ++end;
+            }
+            int pattern = Arrays.binarySearch(patterns, handChunks.substring(start, end));
+            if (pattern < 0 || i >= TOTAL_SUITS) {
+                return 0;
+            }
+            key |= (pattern + 1) << (PATTERN_BITS * (TOTAL_SUITS - 1 - i++));
+            start = end;
+        }
+        return key;
+    }
+
     private List<Pair<String, int[]>> loadTricks(String resourceName) {
         List<Pair<String, int[]>> tricks = new ArrayList<>();
         ClassLoader classloader = Thread.currentThread().getContextClassLoader();
@@ -120,213 +199,227 @@ public class BidData {
         return tricks;
     }
 
-    // get pairs for all suits
-    public List<Pair<String, Integer>> toSuitChunks(CardSet hand, int turn) {
-        List<Pair<String, Integer>> pairs = new ArrayList<>();
-        int bitset = 0;
-        while ((bitset = CardSet.bm4NextSuit(hand.getBitmap(), bitset)) != 0) {
-            StringBuilder sb = new StringBuilder();
-            Suit suit = null;
-            int bit = 0;
-            while ((bit = CardSet.prev(bitset, bit)) != 0) {
-                int rank = Card.get(bit).getRank().getValue();
-                suit = Card.get(bit).getSuit();
-                sb.append(String.format("%X", rank));
+    // hand pattern: the suits sorted by their patterns in descending order,
+    // equal patterns by the cards, then by suit, packed into long, see getSuit(), getPattern()
+    // low 32 bits are the key for Utyatsky's table
+    public long toHandPattern(int bitmap) {
+        long keys = 0;
+        for (int suitNum = 0; suitNum < TOTAL_SUITS; ++suitNum) {
+            int bits = (bitmap >>> (suitNum * CardSet.SUIT_LIST_LENGTH)) & CardSet.SUIT_LIST_MASK;
+            if (bits != 0) {
+                long key = (suitPatterns[bits] + 1) << 10 | bits << 2 | (3 - suitNum);
+                keys |= key << (16 * suitNum);
             }
-            String chunk = new String(sb);
-            Pair<String, Integer> pair = searchTricks(chunk, turn);
-            // append suit code to be able to locate real suits after sorting
-            chunk = pair.first + suit.toString();
-            pair.first = chunk;
-            pairs.add(pair);
         }
-
-        // sort in descending order
-        Collections.sort(pairs, (p0, p1) -> {
-            int diff = p1.first.substring(0, p1.first.length() - 1).compareTo(p0.first.substring(0, p0.first.length() - 1));
-            if (diff != 0) {
-                return diff;
+        long handPattern = 0;
+        int count = 0;
+        while (keys != 0) {
+            int max = 0;
+            int maxSlot = 0;
+            for (int i = 0; i < TOTAL_SUITS; ++i) {
+                int key = (int)(keys >>> (16 * i)) & 0xffff;
+                if (max < key) {
+                    max = key;
+                    maxSlot = i;
+                }
             }
-            return hand.list(getSuit(p1.first)).compareTo(hand.list(getSuit(p0.first)));
-        });
-        return pairs;
+            keys &= ~(0xffffL << (16 * maxSlot));
+            handPattern |= (long)(max >>> 10) << (PATTERN_BITS * (TOTAL_SUITS - 1 - count)) |
+                (long)(3 - (max & 3)) << (SUIT_SHIFT + 2 * count);
+            ++count;
+        }
+        return handPattern | (long)count << COUNT_SHIFT;
+    }
+
+    public static int suitCount(long handPattern) {
+        return (int)(handPattern >>> COUNT_SHIFT);
+    }
+
+    // i-th suit of the hand pattern
+    public static Suit getSuit(long handPattern, int i) {
+        if (i < 0 || i >= suitCount(handPattern)) {
+            throw new RuntimeException(String.format("no suit #%d in hand pattern %x", i, handPattern));
+        }
+        return SUITS[(int)(handPattern >>> (SUIT_SHIFT + 2 * i)) & 3];
+    }
+
+    // i-th suit's tricks table chunk, e.g. 6ED, or just the suit length
+    public String getPattern(long handPattern, int i) {
+        getSuit(handPattern, i);    // validate
+        int pattern = (int)(handPattern >>> (PATTERN_BITS * (TOTAL_SUITS - 1 - i))) & 0xff;
+        return patterns[pattern - 1];
+    }
+
+    public ClockCache getBidCache() {
+        return bidCache;
     }
 
     // called with:
     // 11 cards to guess max bid
     // 12 cards to define drops and declare round
+    // the same hands are evaluated over and over while bidding and for every talon, so the results are cached
     public PlayerBid getBid(CardSet hand, Bid minBid, int elderHand, int nDrops) {
+        if (!CACHE_BIDS) {
+            return calcBid(hand, minBid, elderHand, nDrops);
+        }
+        long key = hand.getBitmap() & 0xffffffffL | (long)minBid.getValue() << 32 |
+            (long)elderHand << 40 | (long)nDrops << 42;
+        long cached = bidCache.get(key);
         PlayerBid playerBid;
-        added.clear();
-        List<Pair<String, Integer>> pairs = toSuitChunks(hand, elderHand);
+        if (cached == ClockCache.NULL_VALUE) {
+            playerBid = calcBid(hand, minBid, elderHand, nDrops);
+            bidCache.put(key, (long)playerBid.value << 32 | playerBid.drops.getBitmap() & 0xffffffffL);
+        } else {
+            // always a new object, callers modify the drops
+            playerBid = new PlayerBid((int)(cached >> 32));
+            playerBid.drops = new CardSet((int)cached);
+        }
+        return playerBid;
+    }
+
+    private PlayerBid calcBid(CardSet hand, Bid minBid, int elderHand, int nDrops) {
+        PlayerBid playerBid;
+        long handPattern = toHandPattern(hand.getBitmap());
 
         // fill hand up to 12 cards to use Utyatsky's table
         // using the least significant suits and cards to minimize the impact
         int handSize = hand.size();
-        CardSet handCopy = new CardSet(hand);
+        int handCopy = hand.getBitmap();
+        int added = 0;
         int add = 12 - handSize;
         while (--add >= 0) {
-            if (pairs.size() < TOTAL_SUITS) {
-                final Suit[] suits = {Suit.SPADE, Suit.CLUB, Suit.DIAMOND, Suit.HEART};
-                for (Pair<String, Integer> p : pairs) {
-                    int suitNum = getSuit(p.first).getValue();
-                    suits[suitNum] = null;
-                }
-                for (Suit s : suits) {
-                    if (s == null) {
+            if (suitCount(handPattern) < TOTAL_SUITS) {
+                for (Suit s : SUITS) {
+                    int suitMask = CardSet.suitMask(s);
+                    if ((handCopy & suitMask) != 0) {
                         continue;
                     }
-                    Card card = Card.fromName(s + "7");
-                    added.add(card);
-                    handCopy.add(card);
+                    int card = suitMask & -suitMask;    // 7
+                    added |= card;
+                    handCopy |= card;
                     ++handSize;
                     if (add == 0) {
                         break;
                     }
                 }
             } else {
-                Card card;
-                Suit suit = getSuit(pairs.get(TOTAL_SUITS - 1).first);
-                Card first = handCopy.list(suit).first();
-                if (first.getRank().compare(Rank.SEVEN) > 0) {
-                    card = Card.fromName(suit + "7");
-                } else {
-                    Card next;
-                    while(first.compareInTrick(next = handCopy.next(first)) == -1) {
-                        first = next;
-                    }
-                    card = Card.fromName(first.getSuit().toString() + (first.getRank().getValue() + 1));
-                }
-                added.add(card);
-                handCopy.add(card);
+                Suit suit = getSuit(handPattern, TOTAL_SUITS - 1);
+                int shift = Integer.numberOfTrailingZeros(CardSet.suitMask(suit));
+                int bits = (handCopy >>> shift) & CardSet.SUIT_LIST_MASK;
+                // 7 or the card above the lowest sequence
+                int card = (bits + 1) & ~bits;
+                added |= card << shift;
+                handCopy |= card << shift;
                 ++handSize;
             }
-            pairs = toSuitChunks(handCopy, elderHand);
+            handPattern = toHandPattern(handCopy);
         }
 
         OneBid oneBid;
-        // create key for allBidData, compute totalTricks preliminary
-        StringBuilder sb = new StringBuilder();
-        for (Pair<String, Integer> pair : pairs) {
-            String chunk = pair.first;
-            int len = chunk.length() - 1;
-            sb.append(chunk, 0, len);
-        }
-        String key = new String(sb);
-        OneBid[] allBids = allBidData.get(key);
-        if (allBids != null) {
+        int found = Arrays.binarySearch(bidKeys, (int)handPattern);
+        if (found >= 0) {
+            OneBid[] allBids = bidValues[found];
             int index = elderHand;
             if (!minBid.equals(Bid.BID_6S)) {
                 index += NOP;
             }
             oneBid = allBids[index];
-            int value = toBidValue(pairs, oneBid.bid);
+            int value = toBidValue(handPattern, oneBid.bid);
             playerBid = new PlayerBid(value);
             if (minBid.compareTo(playerBid.toBid()) <= 0) {
                 for (int i = 0; i < oneBid.drops.length; ++i) {
-                    String handChunk = pairs.get(oneBid.drops[i]).first;
-                    Suit suit = getSuit(handChunk);
-                    Card drop = handCopy.list(suit).first();
-                    if (added.isEmpty() || added.contains(drop)) {
-                        playerBid.drops.add(drop);
-                        handCopy.remove(drop);
-                        added.remove(drop);
+                    Suit suit = getSuit(handPattern, oneBid.drops[i]);
+                    int suitCards = handCopy & CardSet.suitMask(suit);
+                    int drop = suitCards & -suitCards;
+                    if (drop == 0) {
+                        continue;
+                    }
+                    if (added == 0 || (added & drop) != 0) {
+                        playerBid.drops.add(Card.get(drop));
+                        handCopy &= ~drop;
+                        added &= ~drop;
                     }
                 }
                 if (playerBid.drops.size() < nDrops) {
-                    PlayerBid playerBid1 = calcPlayerBid(handCopy, minBid, elderHand, nDrops - playerBid.drops.size());
+                    PlayerBid playerBid1 = calcPlayerBid(handCopy, added, minBid, elderHand, nDrops - playerBid.drops.size());
                     playerBid.drops.add(playerBid1.drops);
                 }
                 return playerBid;
             }
         }
         // not found or overbidding, use suit lists
-        playerBid = calcPlayerBid(handCopy, minBid, elderHand, nDrops);
+        playerBid = calcPlayerBid(handCopy, added, minBid, elderHand, nDrops);
         return playerBid;
     }
 
     // brute force, find the cards to drop for the max tricks
-    private PlayerBid calcPlayerBid(CardSet hand, Bid minBid, int elderHand, int nDrops) {
+    // candidates from the weakest suit, the lowest cards first, except trump candidate and added cards
+    private PlayerBid calcPlayerBid(int hand, int added, Bid minBid, int elderHand, int nDrops) {
         PlayerBid playerBid = new PlayerBid();
-        List<Pair<String, Integer>> pairs = toSuitChunks(hand, elderHand);
-        Suit trumpCandidate = getSuit(pairs.get(0).first);
-
-        // create CardList sorted by suit lengths
-        CardList handList0 = new CardList();
-        for (int i = pairs.size() - 1; i >= 0; --i) {
-            String handChunk = pairs.get(i).first;
-            Suit suit = getSuit(handChunk);
-            if (suit.equals(trumpCandidate)) {
-                continue;   // skip
-            }
-            int bit0 = 0;
-            int bitmap = hand.list(suit).getBitmap();
-            while ((bit0 = CardSet.next(bitmap, bit0)) != 0) {
-                Card card = Card.get(bit0);
-                if (added.contains(card)) {
-                    continue;  // skip
-                }
-                handList0.add(card);
-            }
-        }
+        long handPattern = toHandPattern(hand);
+        int count = suitCount(handPattern);
+        int trumpMask = CardSet.suitMask(getSuit(handPattern, 0));
 
         int maxTricks = -1;
-        for (int i = 0; i < handList0.size(); ++i) {
-            Card card0 = handList0.get(i);
-            handList0.remove(i);
-            hand.remove(card0);
-            CardList handList1 = handList0;
-            if (nDrops == 1) {
-                handList1 = new CardList(card0);
-            }
-            for (Card card1 : handList1) {
-                hand.remove(card1);
-
-                int tricks = calcTricks(hand, elderHand);
-                hand.add(card1);
-                if (maxTricks < tricks) {
-                    maxTricks = tricks;
-                    playerBid.drops.clear();
-                    playerBid.drops.add(card0);
-                    playerBid.drops.add(card1);
+        int drops = 0;
+        for (int i = count - 1; i >= 0; --i) {
+            int cards0 = hand & ~added & ~trumpMask & CardSet.suitMask(getSuit(handPattern, i));
+            int bit0 = 0;
+            while ((bit0 = CardSet.next(cards0, bit0)) != 0) {
+                if (nDrops == 1) {
+                    int tricks = calcTricks(hand & ~bit0, elderHand);
+                    if (maxTricks < tricks) {
+                        maxTricks = tricks;
+                        drops = bit0;
+                    }
+                    continue;
+                }
+                for (int j = count - 1; j >= 0; --j) {
+                    int cards1 = hand & ~added & ~trumpMask & CardSet.suitMask(getSuit(handPattern, j)) & ~bit0;
+                    int bit1 = 0;
+                    while ((bit1 = CardSet.next(cards1, bit1)) != 0) {
+                        int tricks = calcTricks(hand & ~bit0 & ~bit1, elderHand);
+                        if (maxTricks < tricks) {
+                            maxTricks = tricks;
+                            drops = bit0 | bit1;
+                        }
+                    }
                 }
             }
-            hand.add(card0);
-            handList0.add(i, card0);
         }
+        playerBid.drops = new CardSet(drops);
 
-        hand.remove(playerBid.drops);
-        pairs = toSuitChunks(hand, elderHand);
+        hand &= ~drops;
+        handPattern = toHandPattern(hand);
         int tricks = calcTricks(hand, elderHand);
-        hand.add(playerBid.drops);
 
-        String chunk0 = pairs.get(0).first;
-        int len0 = Integer.parseInt(chunk0.substring(0, 1));
-        String chunk1 = pairs.get(1).first;
-        int len1 = Integer.parseInt(chunk1.substring(0, 1));
+        Suit suit0 = getSuit(handPattern, 0);
+        int len0 = CardSet.size(hand & CardSet.suitMask(suit0));
+        Suit suit1 = getSuit(handPattern, 1);
+        int len1 = CardSet.size(hand & CardSet.suitMask(suit1));
         if (len0 == 4 && len1 == 4 && elderHand != 0) {
             // set 2nd best suit as trump
-            chunk0 = pairs.get(1).first;
-            chunk1 = pairs.get(0).first;
+            suit0 = getSuit(handPattern, 1);
+            suit1 = getSuit(handPattern, 0);
         }
 
         int bidSuitNum = 5; // no trump
         if (len0 > 3) {
             // the best suit must be long enough
-            bidSuitNum = getSuit(chunk0).getValue() + 1;
+            bidSuitNum = suit0.getValue() + 1;
         }
         int bidValue = tricks * 10 + bidSuitNum;
 
         int minValue = minBid.getValue();
         if (bidValue < minValue) {
-            if (!added.isEmpty()) {
+            if (added != 0) {
                 // bidding
                 playerBid.value = Bid.BID_PASS.getValue();
                 return playerBid;
             }
             // declaring round, overbidding
             if (len1 >= 4 && len1 == len0) {    // 2nd best suit must be long enough
-                int bidSuitNum1 = getSuit(chunk1).getValue() + 1;
+                int bidSuitNum1 = suit1.getValue() + 1;
                 int _bidValue = tricks * 10 + bidSuitNum1;
                 if (bidValue < _bidValue) {
                     bidValue = _bidValue;
@@ -349,35 +442,30 @@ public class BidData {
         return playerBid;
     }
 
-    private int calcTricks(CardSet hand, int elderHand) {
+    private int calcTricks(int hand, int elderHand) {
         int tricks = 0;
-        List<Pair<String, Integer>> pairs0 = toSuitChunks(hand, elderHand);
-        for (Pair<String, Integer> pair : pairs0) {
-            tricks += pair.second;
+        for (int suitNum = 0; suitNum < TOTAL_SUITS; ++suitNum) {
+            int bits = (hand >>> (suitNum * CardSet.SUIT_LIST_LENGTH)) & CardSet.SUIT_LIST_MASK;
+            tricks += suitTricks[bits * NOP + elderHand];
         }
         return tricks;
     }
 
-    public Suit getSuit(String handChunk) {
-        return Suit.fromCode(handChunk.charAt(handChunk.length() - 1));
-    }
-
-    private int toBidValue(List<Pair<String, Integer>> pairs, int value) {
+    private int toBidValue(long handPattern, int value) {
         int tricks = value / 10;
         int suitNum = value % 10;
         if (suitNum != 4) {
-            String handChunk = pairs.get(suitNum).first;
-            suitNum = getSuit(handChunk).getValue();
+            suitNum = getSuit(handPattern, suitNum).getValue();
         }
         return tricks * 10 + suitNum + 1;
     }
 
-    private Pair<String, Integer> searchTricks(String chunk, int turn) {
-        Pair<String, Integer> result = null;
+    // index of the tricks table chunk for the suit chunk, -1 if none
+    private int searchTricks(String chunk) {
         int len = chunk.length();
         chunk = len + chunk.replaceAll("x", "");
-        for (Pair<String, int[]> pair : tricks) {
-            String tableChunk = pair.first;
+        for (int i = 0; i < tricks.size(); ++i) {
+            String tableChunk = tricks.get(i).first;
             int tableLen = Integer.parseInt(tableChunk.substring(0, 1));
             if (tableLen > len) {
                 continue;
@@ -394,15 +482,10 @@ public class BidData {
                 break;
             }
             if (res == 0) {
-                int value = pair.second[turn];
-                result = new Pair<>(pair.first, value);
-                break;
+                return i;
             }
         }
-        if (result == null) {
-            result = new Pair<>("" + len, 0);
-        }
-        return result;
+        return -1;
     }
 
     @Override
@@ -0,0 +1,165 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Bounded long -> long cache for repeated evaluations, e.g. bids for the same hands
+ * Fixed array of entries chained from power of 2 hash buckets.
+ * When all entries are in use, CLOCK eviction: the hand goes over the entries,
+ * clears their reference bits and evicts the 1st one not used since the previous round.
+ * An entry keeps its index until it is evicted, so the callers can keep objects in an array by it.
+ * Synchronized, the cached evaluations are much longer than the lock.
+ */
+
+package com.ab.util;
+
+import java.util.Arrays;
+
+public class ClockCache {
+    public static final long NULL_VALUE = Long.MIN_VALUE;
+    public static final int NULL_INDEX = -1;
+    private static final int NIL = -1;
+
+    private final long[] keys;
+    private final long[] values;
+    private final int[] next;
+    private final boolean[] referenced;
+    private final int[] buckets;
+    private int size;
+    private int hand;
+
+    // just statistics
+    private long hits;
+    private long misses;
+    private long evicted;
+
+    public ClockCache(int capacity) {
+        int _capacity = Integer.highestOneBit(capacity);
+        if (_capacity < capacity) {
+            _capacity <<= 1;
+        }
+        keys = new long[_capacity];
+        values = new long[_capacity];
+        next = new int[_capacity];
+        referenced = new boolean[_capacity];
+        buckets = new int[_capacity];
+        Arrays.fill(buckets, NIL);
+    }
+
+    // NULL_VALUE if not found
+    public synchronized long get(long key) {
+        int i = getIndex(key);
+        if (i == NULL_INDEX) {
+            return NULL_VALUE;
+        }
+        return values[i];
+    }
+
+    // the entry of the key, 0 .. capacity() - 1, NULL_INDEX if not found
+    public synchronized int getIndex(long key) {
+        for (int i = buckets[ConcurrentLongIntMap.hash(key) & (buckets.length - 1)]; i != NIL; i = next[i]) {
+            if (keys[i] == key) {
+                referenced[i] = true;
+                ++hits;
+                return i;
+            }
+        }
+        ++misses;
+        return NULL_INDEX;
+    }
+
+    // returns the entry of the key
+    public synchronized int put(long key, long value) {
+        if (value == NULL_VALUE) {
+            throw new RuntimeException(String.format("invalid value 0x%x for key 0x%x", value, key));
+        }
+        int bucket = ConcurrentLongIntMap.hash(key) & (buckets.length - 1);
+        for (int i = buckets[bucket]; i != NIL; i = next[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                referenced[i] = true;
+                return i;
+            }
+        }
+        int slot;
+        if (size < keys.length) {
+            slot = size++;
+        } else {
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) & (keys.length - 1);
+            }
+            slot = hand;
+            hand = (hand + 1) & (keys.length - 1);
+            unlink(slot);
+            ++evicted;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        referenced[slot] = false;
+        next[slot] = buckets[bucket];
+        buckets[bucket] = slot;
+        return slot;
+    }
+
+    private void unlink(int slot) {
+        int bucket = ConcurrentLongIntMap.hash(keys[slot]) & (buckets.length - 1);
+        if (buckets[bucket] == slot) {
+            buckets[bucket] = next[slot];
+            return;
+        }
+        int i = buckets[bucket];
+        while (next[i] != slot) {
+            i = next[i];
+        }
+        next[i] = next[slot];
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(buckets, NIL);
+        Arrays.fill(referenced, false);
+        size = 0;
+        hand = 0;
+        hits = misses = evicted = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits %,d, misses %,d, evicted %,d, size %,d, capacity %,d",
+            hits, misses, evicted, size, keys.length);
+    }
+}
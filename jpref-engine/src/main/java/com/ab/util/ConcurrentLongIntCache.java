@@ -0,0 +1,135 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/18/26
+ *
+ * Lock-free lossy long -> small int cache, e.g. for TrickList endgame positions kept for all builds.
+ * An entry is one long, the value in the highest valueBits and the key below them,
+ * so a reader that sees the key sees its value too.
+ * A key goes to one of BUCKET_SIZE slots from its hash. When they are all busy,
+ * the new entry replaces one of them, so the cache never fills up and is never cleared,
+ * a miss costs at most BUCKET_SIZE probes.
+ */
+
+package com.ab.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentLongIntCache {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final int BUCKET_SIZE = 8;            // 64 bytes, one cache line
+    private static final int BUCKET_BITS = 3;
+
+    public static final long NULL_ENTRY = 0;
+    public static final int NULL_VALUE = 0;
+
+    private final AtomicLongArray entries;
+    private final int keyBits;
+    private final long keyMask;
+    private final int maxValue;
+    private final LongAdder size = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+
+    // keys up to 64 - valueBits bits
+    public ConcurrentLongIntCache(int valueBits) {
+        this(DEFAULT_CAPACITY, valueBits);
+    }
+
+    public ConcurrentLongIntCache(int capacity, int valueBits) {
+        if (valueBits <= 0 || valueBits >= Integer.SIZE) {
+            throw new RuntimeException(String.format("invalid valueBits %d", valueBits));
+        }
+        int _capacity = Integer.highestOneBit(Math.max(capacity, BUCKET_SIZE));
+        if (_capacity < capacity) {
+            _capacity <<= 1;
+        }
+        entries = new AtomicLongArray(_capacity);
+        keyBits = Long.SIZE - valueBits;
+        keyMask = (1L << keyBits) - 1;
+        maxValue = (1 << valueBits) - 1;
+    }
+
+    // keys must be positive, values in 1..2^valueBits - 1.
+    // Does not replace existing value
+    public void put(long key, int value) {
+        if (key <= 0 || key > keyMask) {
+            throw new RuntimeException(String.format("invalid key 0x%x", key));
+        }
+        if (value <= NULL_VALUE || value > maxValue) {
+            throw new RuntimeException(String.format("invalid value %d", value));
+        }
+        long entry = (long)value << keyBits | key;
+        int hash = hash(key);
+        int bucket = hash & (entries.length() - 1) & -BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; ++i) {
+            int index = bucket + i;
+            long cacheEntry = entries.get(index);
+            if (cacheEntry == NULL_ENTRY) {
+                if (entries.compareAndSet(index, NULL_ENTRY, entry)) {
+                    size.increment();
+                    return;
+                }
+                // somebody was faster, recheck the same slot
+                cacheEntry = entries.get(index);
+            }
+            if ((cacheEntry & keyMask) == key) {
+                return;
+            }
+        }
+        // the slots never become empty again, so get() can stop on the 1st empty one
+        entries.set(bucket + (hash >>> (Integer.SIZE - BUCKET_BITS)), entry);
+        replaced.increment();
+    }
+
+    public int get(long key) {
+        int bucket = hash(key) & (entries.length() - 1) & -BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; ++i) {
+            long cacheEntry = entries.get(bucket + i);
+            if (cacheEntry == NULL_ENTRY) {
+                break;
+            }
+            if ((cacheEntry & keyMask) == key) {
+                return (int)(cacheEntry >>> keyBits);
+            }
+        }
+        return NULL_VALUE;
+    }
+
+    // busy slots
+    public int size() {
+        return size.intValue();
+    }
+
+    public int capacity() {
+        return entries.length();
+    }
+
+    public long getReplaced() {
+        return replaced.longValue();
+    }
+
+    // murmur3 finalizer
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+}
@@ -0,0 +1,180 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ *
+ * Lock-free long -> int map for TrickList positions
+ * Open addressing with linear probing, power of 2 capacity.
+ * A slot goes only once from NULL_KEY to LOCKED_KEY and to the key, the value is written in between,
+ * so a reader that sees the key sees its value too.
+ * When MAX_PROBES slots are busy the entry is not stored, this is a cache,
+ * the caller will rebuild the position. The capacity is doubled on the next clear().
+ */
+
+package com.ab.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.ab.util.Logger.printf;
+
+public class ConcurrentLongIntMap {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final int MAX_CAPACITY = 1 << 24;
+    public static final int MAX_PROBES = 64;
+
+    // keys must be positive
+    public static final long NULL_KEY = 0;
+    public static final long LOCKED_KEY = -1;
+    public static final int NULL_VALUE = 0;
+
+    // just statistics
+    public static int maxSearchCount = 0;
+    public static int maxSize = 0;
+    public static int maxCapacity = 0;
+    public static long totalDropped = 0;
+
+    private volatile AtomicLongArray keys;
+    private volatile AtomicIntegerArray values;
+    private final LongAdder size = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ConcurrentLongIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConcurrentLongIntMap(int capacity) {
+        int _capacity = Integer.highestOneBit(capacity);
+        if (_capacity < capacity) {
+            _capacity <<= 1;
+        }
+        allocate(_capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new AtomicLongArray(capacity);
+        values = new AtomicIntegerArray(capacity);
+        if (maxCapacity < capacity) {
+            maxCapacity = capacity;
+        }
+    }
+
+    // does not replace existing value
+    public void put(long key, int value) {
+        if (key <= 0) {
+            throw new RuntimeException(String.format("invalid key 0x%x", key));
+        }
+        AtomicLongArray keys = this.keys;
+        AtomicIntegerArray values = this.values;
+        int mask = keys.length() - 1;
+        int index = hash(key) & mask;
+        int probes = 0;
+        while (probes < MAX_PROBES) {
+            long mapKey = keys.get(index);
+            if (mapKey == key) {
+                return;
+            }
+            if (mapKey == NULL_KEY) {
+                if (keys.compareAndSet(index, NULL_KEY, LOCKED_KEY)) {
+                    values.set(index, value);
+                    keys.set(index, key);
+                    size.increment();
+                    return;
+                }
+                continue;   // somebody was faster, recheck the same slot
+            }
+            if (mapKey == LOCKED_KEY) {
+                // the value is being written, it may be the same key
+                Thread.yield();
+                continue;
+            }
+            ++probes;
+            if (maxSearchCount < probes) {
+                maxSearchCount = probes;
+            }
+            index = (index + 1) & mask;
+        }
+        dropped.increment();
+    }
+
+    public int get(long key) {
+        AtomicLongArray keys = this.keys;
+        AtomicIntegerArray values = this.values;
+        int mask = keys.length() - 1;
+        int index = hash(key) & mask;
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            long mapKey = keys.get(index);
+            if (mapKey == key) {
+                return values.get(index);
+            }
+            if (mapKey == NULL_KEY) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        return NULL_VALUE;
+    }
+
+    public int size() {
+        return size.intValue();
+    }
+
+    public int capacity() {
+        return keys.length();
+    }
+
+    public int getDropped() {
+        return dropped.intValue();
+    }
+
+    // not thread-safe, must be called when nobody uses the map
+    public void clear() {
+        int size = size();
+        if (maxSize < size) {
+            maxSize = size;
+        }
+        int _dropped = getDropped();
+        totalDropped += _dropped;
+        int capacity = capacity();
+        if ((_dropped > 0 || size > capacity / 2) && capacity < MAX_CAPACITY) {
+            allocate(2 * capacity);
+        } else if (size > 0) {
+            AtomicLongArray keys = this.keys;
+            for (int i = 0; i < capacity; ++i) {
+                keys.lazySet(i, NULL_KEY);
+            }
+        }
+        this.size.reset();
+        this.dropped.reset();
+    }
+
+    // murmur3 finalizer
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+
+    public static void printStatistics() {
+        printf("ConcurrentLongIntMap maxSize: %,d, capacity: %,d, dropped: %,d, max probes: %,d\n",
+            maxSize, maxCapacity, totalDropped, maxSearchCount);
+    }
+}
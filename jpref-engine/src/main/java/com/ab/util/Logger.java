@@ -28,6 +28,7 @@ public class Logger {
 
     public static void setHolder(LogHolder logHolder) {
         Logger.logHolder = logHolder;
+        out = null;
     }
 
     private static PrintStream getOutput() {
@@ -55,7 +55,7 @@ public abstract class ScoreCalculator {
         return instance;
     }
 
-    public static ScoreCalculator getInstance() {
+    public static synchronized ScoreCalculator getInstance() {
         if (instance == null) {
             instance = getScoreCalculator();
         }
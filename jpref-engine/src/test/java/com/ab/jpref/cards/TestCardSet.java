@@ -457,4 +457,35 @@ public class TestCardSet {
             Assert.assertEquals("tricksTheyStart", expecteTricks, listData.maxTheyStart);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUnwantedTricksTable() {
+        for (Card.Suit suit : new Card.Suit[] {Card.Suit.SPADE, Card.Suit.HEART}) {
+            int shift = CardSet.suitOffset(suit);
+            for (int layout = 0; layout < 1 << (2 * CardSet.SUIT_LIST_LENGTH); ++layout) {
+                int[] bitmaps = new int[4];
+                for (int i = 0; i < CardSet.SUIT_LIST_LENGTH; ++i) {
+                    bitmaps[(layout >>> (2 * i)) & 3] |= 1 << (shift + i);
+                }
+                CardSet mine = new CardSet(bitmaps[1]);
+                CardSet left = new CardSet(bitmaps[2]);
+                CardSet right = new CardSet(bitmaps[3]);
+                // left has some of right's cards too, when both may have them
+                CardSet leftAndCommon = new CardSet(bitmaps[2] | bitmaps[3] & 0x55555555);
+                for (int elderHand : new int[] {0, 2}) {
+                    CardSet.ListData expected = mine.computeUnwantedTricks(left, right, elderHand);
+                    // the 1st call fills the table, the 2nd one takes it from there
+                    for (int j = 0; j < 3; ++j) {
+                        CardSet.ListData listData = mine.maxUnwantedTricks(j < 2 ? left : leftAndCommon, right, elderHand);
+                        String msg = String.format("%s %s %s, %d", mine, left, right, elderHand);
+                        Assert.assertEquals(msg, expected.suit, listData.suit);
+                        Assert.assertEquals(msg, expected.maxTheyStart, listData.maxTheyStart);
+                        Assert.assertEquals(msg, expected.maxMeStart, listData.maxMeStart);
+                        Assert.assertEquals(msg, expected.cardsLeft, listData.cardsLeft);
+                        Assert.assertEquals(msg, expected.good, listData.good);
+                    }
+                }
+            }
+        }
+    }
+}
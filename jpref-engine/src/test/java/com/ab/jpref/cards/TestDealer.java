@@ -0,0 +1,109 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ */
+
+package com.ab.jpref.cards;
+
+import com.ab.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class TestDealer {
+    static final Util util = Util.getInstance();
+
+    private void check(CardSet[] allowed, int[] sizes, CardSet[] hands) {
+        Assert.assertNotNull(hands);
+        CardSet all = new CardSet();
+        for (int i = 0; i < hands.length; ++i) {
+            Assert.assertEquals(sizes[i], hands[i].size());
+            CardSet extra = new CardSet(hands[i]);
+            extra.remove(allowed[i]);
+            Assert.assertTrue(extra.toString(), extra.isEmpty());
+            all.add(hands[i]);
+        }
+        Assert.assertEquals(CardSet.union(allowed), all);
+    }
+
+    @Test
+    public void testFree() {
+        CardSet pool = new CardSet(util.toCardList("♠789XJQKA ♣789XJQKA ♦789XJQ"));
+        CardSet[] allowed = {pool, pool, pool};
+        int[] sizes = {10, 10, 2};
+        Dealer dealer = new Dealer(allowed, sizes);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] spades = new int[sizes.length];
+        for (int n = 0; n < 1000; ++n) {
+            CardSet[] hands = dealer.deal(random);
+            check(allowed, sizes, hands);
+            for (int i = 0; i < hands.length; ++i) {
+                spades[i] += hands[i].list(Card.Suit.SPADE).size();
+            }
+        }
+        // 8 spades of 22 cards
+        Assert.assertEquals(3636, spades[0], 150);
+        Assert.assertEquals(3636, spades[1], 150);
+    }
+
+    @Test
+    public void testVoids() {
+        CardSet pool = new CardSet(util.toCardList("♠789XJQKA ♣789XJQKA ♦789XJQ"));
+        CardSet noSpades = new CardSet(pool);
+        noSpades.remove(CardSet.getDeck(Card.Suit.SPADE));
+        CardSet noClubs = new CardSet(pool);
+        noClubs.remove(CardSet.getDeck(Card.Suit.CLUB));
+        CardSet[] allowed = {noSpades, noClubs, pool};
+        int[] sizes = {10, 10, 2};
+        Dealer dealer = new Dealer(allowed, sizes);
+        SplittableRandom random = new SplittableRandom(2);
+        for (int n = 0; n < 1000; ++n) {
+            check(allowed, sizes, dealer.deal(random));
+        }
+    }
+
+    @Test
+    public void testForced() {
+        CardSet[] allowed = {
+            new CardSet(util.toCardList("♠789 ♣7")),
+            new CardSet(util.toCardList("♣7")),
+        };
+        int[] sizes = {3, 1};
+        CardSet[] hands = new Dealer(allowed, sizes).deal(new SplittableRandom(3));
+        Assert.assertEquals(new CardSet(util.toCardList("♠789")), hands[0]);
+        Assert.assertEquals(new CardSet(util.toCardList("♣7")), hands[1]);
+    }
+
+    @Test
+    public void testInvalid() {
+        CardSet cards = new CardSet(util.toCardList("♠789"));
+        try {
+            new Dealer(new CardSet[] {cards, cards}, new int[] {1, 1});
+            Assert.fail("3 cards for 2 places");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        try {
+            new Dealer(new CardSet[] {cards, new CardSet()}, new int[] {2, 1});
+            Assert.fail("3 forced cards for 2 places");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*  This file is part of JPref project.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see [http://www.gnu.org/licenses/].
+ *
+ * Copyright (C) 2026 Alexander Bootman <ab.jpref@gmail.com>
+ *
+ * Created: 10/17/26
+ */
+
+package com.ab.jpref.cards;
+
+import com.ab.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSuitTricks {
+    static final Util util = Util.getInstance();
+
+    private CardSet toSuit(String ranks) {
+        if (ranks.equals("-")) {
+            return new CardSet();
+        }
+        return new CardSet(util.toCardList("♦" + ranks));
+    }
+
+    @Test
+    public void testSuitTricks() {
+        String[] sources = {
+            // my, left, right, guaranteed and max with declarer, left, right on lead, best lead
+            "AKQ - - 3 3 3 3 3 3 A",
+            "AQ K8 7 1 2 2 2 1 2 A",
+            "AQ 7 K8 1 2 2 2 2 2 A",
+            "KQ A 7 1 1 1 1 1 1 K",
+            "89 J 7X 0 1 0 1 0 1 -",
+            "8XQ 79J - 2 3 2 3 2 3 X",
+        };
+        SuitTricks suitTricks = SuitTricks.getInstance();
+        for (String source : sources) {
+            String[] parts = source.split(" ");
+            CardSet mine = toSuit(parts[0]);
+            CardSet left = toSuit(parts[1]);
+            CardSet right = toSuit(parts[2]);
+            for (int leader = 0; leader < SuitTricks.NOP; ++leader) {
+                String msg = String.format("%s, %d", source, leader);
+                Assert.assertEquals(msg, Integer.parseInt(parts[3 + 2 * leader]), suitTricks.guaranteed(mine, left, right, leader));
+                Assert.assertEquals(msg, Integer.parseInt(parts[4 + 2 * leader]), suitTricks.max(mine, left, right, leader));
+            }
+            Card best = parts[9].equals("-") ? null : Card.fromName("♦" + parts[9]);
+            Assert.assertEquals(source, best, suitTricks.bestLead(mine, left, right));
+        }
+    }
+
+    @Test
+    public void testTable() {
+        SuitTricks suitTricks = SuitTricks.getInstance();
+        int shift = CardSet.suitOffset(Card.Suit.HEART);
+        for (int layout = 0; layout < 1 << (2 * CardSet.SUIT_LIST_LENGTH); ++layout) {
+            int[] ranks = new int[4];
+            for (int i = 0; i < CardSet.SUIT_LIST_LENGTH; ++i) {
+                ranks[(layout >>> (2 * i)) & 3] |= 1 << i;
+            }
+            int[] hands = {ranks[1], ranks[2], ranks[3]};
+            CardSet mine = new CardSet(ranks[1] << shift);
+            CardSet left = new CardSet(ranks[2] << shift);
+            CardSet right = new CardSet(ranks[3] << shift);
+            // cards that both defenders may have are left's
+            CardSet rightAndCommon = new CardSet((ranks[3] | ranks[2] & 0x55) << shift);
+            String msg = String.format("%s %s %s", mine, left, right);
+            for (int leader = 0; leader < SuitTricks.NOP; ++leader) {
+                int guaranteed = SuitTricks.solve(hands, leader, false);
+                int max = SuitTricks.solve(hands, leader, true);
+                Assert.assertTrue(msg, guaranteed <= max);
+                Assert.assertEquals(msg, guaranteed, suitTricks.guaranteed(mine, left, right, leader));
+                Assert.assertEquals(msg, guaranteed, suitTricks.guaranteed(mine, left, rightAndCommon, leader));
+                Assert.assertEquals(msg, max, suitTricks.max(mine, left, right, leader));
+            }
+            int bestLead = SuitTricks.bestLead(hands);
+            Card best = bestLead == 0 ? null : Card.get(bestLead << shift);
+            Assert.assertEquals(msg, best, suitTricks.bestLead(mine, left, right));
+        }
+    }
+
+    @Test
+    public void testHandTricks() {
+        CardSet[] hands = new CardSet[3];
+        String[] sources = {"♠AK ♣AQ ♦8 ♥KQ", "♠78 ♣K8 ♦A ♥A9", "♠9 ♣7 ♦79 ♥78"};
+        for (int i = 0; i < hands.length; ++i) {
+            hands[i] = new CardSet(util.toCardList(sources[i]));
+        }
+        // ♠AK 2, ♣AQ 1, ♥KQ 1
+        Assert.assertEquals(4, SuitTricks.getInstance().handTricks(hands[0], hands[1], hands[2], SuitTricks.DECLARER));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidLayout() {
+        SuitTricks.getInstance().guaranteed(toSuit("AK"), toSuit("KQ"), toSuit("-"), SuitTricks.DECLARER);
+    }
+}
@@ -36,7 +36,7 @@ public class TestBot {
 
     @Before
     public void initTest() {
-        Bot.targetBot = null;
+        EngineContext.getDefault().targetBot = null;
     }
 
     private InputStream getInputStream(String testFileName) {
@@ -112,7 +112,7 @@ public class TestBot {
                 if (minBid == null) {
                     minBid = Config.Bid.fromName("6" + expectedBid.getTrump());
                 }
-                Bot.playerBid = null;
+                EngineContext.getDefault().playerBid = null;
                 Bot bot = new Bot(0);
                 bot.clear();
                 CardSet cardSet = new CardSet(hand);
@@ -179,7 +179,7 @@ public class TestBot {
             } else {
                 targetBot = new ForTricksBot(hands);
             }
-            Bot.trick = trick;
+            EngineContext.getDefault().trick = trick;
             Card card = targetBot.play(trick);
             Card expected = Card.fromName(parts[3]);
             Assert.assertEquals("wrong card", expected, card);
@@ -200,7 +200,7 @@ public class TestBot {
 */
 
 /*
-            Bot.playerBid = new BidData.PlayerBid();
+            EngineContext.getDefault().playerBid = new BidData.PlayerBid();
             ForTricksBot forTricksBot = new ForTricksBot(hands);
             forTricksBot.trick = trick;
             forTricksBot.refineDrop(hands);
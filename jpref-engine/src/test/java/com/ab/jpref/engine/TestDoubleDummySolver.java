@@ -0,0 +1,163 @@
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardList;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.Logger;
+import com.ab.util.Util;
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class TestDoubleDummySolver {
+    public static final int NOP = Config.NOP;
+
+    static final Config config = Config.getInstance();
+    static final Util util = Util.getInstance();
+
+    static final String[] sources = {
+        "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q",
+        "♦XA ♥7JQK  ♠K ♦78QK ♥X  ♠9 ♣K ♦9 ♥89A",
+        "♠79 ♥XJ  ♠JQ ♦A ♥K  ♠K ♦K ♥QA",
+    };
+
+    private CardSet[] toHands(String source) {
+        CardList cards = util.toCardList(source);
+        int size = cards.size() / NOP;
+        CardSet[] hands = new CardSet[NOP];
+        for (int j = 0; j < NOP; ++j) {
+            int k = j * size;
+            hands[j] = new CardSet(cards.subList(k, k + size));
+        }
+        return hands;
+    }
+
+    @Test
+    public void testSameAsTrickList() {
+        GameManager gameManager = new GameManager(config, null);
+        DoubleDummySolver solver = new DoubleDummySolver(new TrickPool());
+        for (String source : sources) {
+            CardSet[] hands = toHands(source);
+            for (Bid bid : new Bid[] {Bid.BID_6S, Bid.BID_6N}) {
+                TrickList trickList = new TrickList(new TrickPool());
+                Trick trick = new Trick();
+                trick.clear(0);
+                gameManager.minBid = bid;
+                gameManager.declarerNumber = 0;
+                gameManager.declarerHand = new CardSet(hands[0]);
+                trick.setBid(bid);
+                trick.setNumber(ROUND_SIZE - hands[0].size());
+                trickList.getCard(new ForTricksBot(hands), trick);
+                int tricks = solver.solve(bid.getTrump(), 0, hands);
+                Logger.printf("%s %s: %d tricks\n", source, bid, tricks);
+                Assert.assertEquals(source + " " + bid, trickList.getEstimate(), tricks);
+            }
+        }
+    }
+
+    @Test
+    public void testSolveAll() {
+        for (String source : sources) {
+            CardSet[] hands = toHands(source);
+            long start = System.currentTimeMillis();
+            int[][] table = new DoubleDummySolver(new TrickPool()).solveAll(hands);
+            long dur = System.currentTimeMillis() - start;
+            Logger.printf("%s: table in %d msec\n", source, dur);
+            for (int i = 0; i <= DoubleDummySolver.NO_TRUMP; ++i) {
+                Card.Suit trumpSuit = i < DoubleDummySolver.NO_TRUMP ? Card.Suit.fromValue(i) : null;
+                for (int leader = 0; leader < NOP; ++leader) {
+                    // every solve from scratch
+                    int tricks = new DoubleDummySolver(new TrickPool()).solve(trumpSuit, leader, hands);
+                    Assert.assertEquals(String.format("%s %s %d", source, trumpSuit, leader), tricks, table[i][leader]);
+                }
+            }
+        }
+    }
+
+    // the list rebuilt for the actual cards counts its tricks from the rebuilt trick,
+    // nothing follows the last tricks; the endgame table would end the lists earlier
+    @Test
+    public void testRebuiltList() {
+        CardSet[] hands = toHands(sources[0]);
+        int endgameTricks = TrickList.ENDGAME_TRICKS;
+        TrickList.ENDGAME_TRICKS = 0;
+        try {
+            for (Bid bid : new Bid[] {Bid.BID_6S, Bid.BID_6N}) {
+                for (int leader = 0; leader < NOP; ++leader) {
+                    TrickPool trickPool = new TrickPool();
+                    new DoubleDummySolver(trickPool).solve(bid.getTrump(), leader, hands);
+                    for (int i = 1; i <= trickPool.size(); ++i) {
+                        long trickData = trickPool.get(i);
+                        if (BaseTrick.getNextIndex(trickData) == 0) {
+                            Assert.assertEquals(String.format("%s %d: trick %d", bid, leader, i),
+                                0, BaseTrick.getFutureTricks(trickData));
+                        }
+                    }
+                }
+            }
+        } finally {
+            TrickList.ENDGAME_TRICKS = endgameTricks;
+        }
+    }
+
+    @Test
+    public void testSuitPermutation() {
+        CardSet[] hands = toHands(sources[0]);
+        // swap spades and hearts
+        CardSet[] swapped = toHands(sources[0].replace('♠', '*').replace('♥', '♠').replace('*', '♥'));
+        DoubleDummySolver solver = new DoubleDummySolver(new TrickPool());
+        int[][] table = solver.solveAll(hands);
+        int[][] swappedTable = solver.solveAll(swapped);
+        int spades = Card.Suit.SPADE.getValue();
+        int hearts = Card.Suit.HEART.getValue();
+        for (int leader = 0; leader < NOP; ++leader) {
+            Assert.assertEquals(table[spades][leader], swappedTable[hearts][leader]);
+            Assert.assertEquals(table[hearts][leader], swappedTable[spades][leader]);
+            Assert.assertEquals(table[DoubleDummySolver.NO_TRUMP][leader], swappedTable[DoubleDummySolver.NO_TRUMP][leader]);
+        }
+    }
+
+    @Test
+    public void testAllocations() {
+        ThreadMXBean threadMXBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        long threadId = Thread.currentThread().getId();
+        TrickPool trickPool = new TrickPool();
+        DoubleDummySolver solver = new DoubleDummySolver(trickPool);
+        // the 1st solve allocates trickPool segments and the buffers
+        String[] deals = {sources[1], "♠89XKA ♣7X ♦JK ♥X  ♠Q ♣89J ♦78X ♥JKA  ♠7J ♣QA ♦9QA ♥79Q", sources[2]};
+        // exact endgame positions need more tricks than canonical ones, the 2nd deal would add a segment
+        int endgameTricks = TrickList.ENDGAME_TRICKS;
+        TrickList.ENDGAME_TRICKS = 0;
+        try {
+            for (int i = 0; i < deals.length; ++i) {
+                CardSet[] hands = toHands(deals[i]);
+                long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                solver.solve(Card.Suit.SPADE, 0, hands);
+                bytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+                Logger.printf("%s: %,d bytes, %,d tricks\n", deals[i], bytes, trickPool.size());
+                if (i > 0) {
+                    // only the root and the result list, nothing per trick
+                    Assert.assertTrue(String.format("%,d bytes", bytes), bytes < 64 * 1024);
+                }
+            }
+        } finally {
+            TrickList.ENDGAME_TRICKS = endgameTricks;
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidHands() {
+        CardSet[] hands = toHands(sources[1]);
+        hands[1].add(hands[0].first());
+        new DoubleDummySolver(new TrickPool()).solve(null, 0, hands);
+    }
+}
@@ -12,7 +12,8 @@ import static com.ab.util.Logger.println;
 
 import com.ab.jpref.trickpool.TrickPool;
 import com.ab.util.Logger;
-import com.ab.util.SimpleLongIntMap;
+import com.ab.util.BidData;
+import com.ab.util.ConcurrentLongIntMap;
 import com.ab.util.Util;
 import static com.ab.util.Util.DEAL_MARK;
 import static com.ab.util.Util.currMethodName;
@@ -22,6 +23,8 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TestGameManager {
     public static final int NOP = Config.NOP;
@@ -41,13 +44,17 @@ public class TestGameManager {
 
     @Before
     public void initTest() {
-        Bot.targetBot = null;
+        EngineContext.getDefault().targetBot = null;
     }
 
     private void printStatistics(int count) {
-        SimpleLongIntMap.printStatistics();
+        ConcurrentLongIntMap.printStatistics();
         printf("done %d tests, maxTreeBuildTime %d msec, maxSimilar %,d, maxPoolCount %,d\n", count,
-            TrickList.maxListBuildTime, TrickList.maxSimilar, TrickList.maxPoolCount);
+            TrickList.maxListBuildTime.get(), TrickList.maxSimilar.get(), TrickList.maxPoolCount.get());
+        printf("trick pool high-water mark %,d, allocated %,d\n",
+            trickList.getTrickPool().highWaterMark(), trickList.getTrickPool().capacity());
+        printf("bid cache: %s\n", BidData.getInstance().getBidCache());
+        printf("misere cache: %s\n", MisereBot.misereCache);
     }
 
     private void printTricks() {
@@ -292,6 +299,64 @@ if (++count[0] > 0) {
         printStatistics(count[0]);
     }
 
+    // the same deals on several tables at once, each with its own EngineContext
+    @Test
+    public void testTables() throws IOException, InterruptedException {
+        println("running: " + currMethodName());
+        final List<CardList> decks = new ArrayList<>();
+        final List<Integer> elderHands = new ArrayList<>();
+        util.getList(getInputStream("biddedplay"),
+            (res, tokens) -> {
+                if (!tokens.get(0).startsWith(DEAL_MARK) || decks.size() >= 4) {
+                    return;
+                }
+                CardList deck = new CardList();
+                for (String token : tokens) {
+                    if (!token.endsWith(":")) {
+                        deck.addAll(util.toCardList(token));
+                    }
+                }
+                deck.verifyDeck();
+                decks.add(deck);
+                elderHands.add(Integer.parseInt(tokens.get(tokens.size() - 1)) % NOP);
+            });
+
+        String expected = playDeals(new EngineContext(), decks, elderHands);
+        final int tables = 3;
+        final String[] results = new String[tables];
+        Thread[] threads = new Thread[tables];
+        for (int i = 0; i < tables; ++i) {
+            final int table = i;
+            threads[i] = new Thread(() -> results[table] = playDeals(new EngineContext(), decks, elderHands));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        println("results: " + expected);
+        for (String result : results) {
+            Assert.assertEquals(expected, result);
+        }
+        // the default table is not touched
+        Assert.assertSame(gameManager, GameManager.getInstance());
+        Assert.assertSame(trickList, TrickList.getInstance());
+    }
+
+    private String playDeals(EngineContext context, List<CardList> decks, List<Integer> elderHands) {
+        new TrickList(context, new TrickPool());
+        GameManager gameManager = new GameManager(context, config, null);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < decks.size(); ++i) {
+            gameManager.playRound(new CardList(decks.get(i)), elderHands.get(i));
+            sb.append(gameManager.minBid);
+            for (Player player : gameManager.players) {
+                sb.append(" ").append(player.getTricks());
+            }
+            sb.append("; ");
+        }
+        return sb.toString();
+    }
+
     @Test
     public void testMisere() throws IOException {
         println("running: " + currMethodName());
@@ -431,7 +496,7 @@ if (++count[0] > 0) {
             gameManager.runGame(testInputStream, 0);
             String t = util.info();
             String text = t + "\n" + String.format("maxBuildTime=%,d msec, maxPositions=%,d, maxMapSize=%,d\n",
-                TrickList.maxListBuildTime, TrickList.maxPositions, SimpleLongIntMap.maxSize);
+                TrickList.maxListBuildTime.get(), TrickList.maxPositions.get(), ConcurrentLongIntMap.maxSize);
             println(text);
         } catch (HumanPlayer.PrefExceptionRerun e) {
             // ignore
@@ -0,0 +1,113 @@
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.config.Config;
+import com.ab.util.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class TestGameServer {
+    static final Config config = Config.getInstance();
+
+    // plays a round in seat 0 and for open defenders: passes, acknowledges the talon, plays the 1st possible card
+    private int playRound(int port) throws IOException {
+        int errors = 0;
+        int rejected = 0;
+        try (Socket socket = new Socket("localhost", port)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            String line = reader.readLine();
+            Assert.assertTrue(line, line.startsWith("table "));
+            writer.println("bogus");
+            String stage = "";
+            int scores = 0;
+            while (scores < Config.NOP && (line = reader.readLine()) != null) {
+                Logger.println(line);
+                String[] tokens = line.split(" ");
+                switch (tokens[0]) {
+                    case "stage":
+                        stage = tokens[1];
+                        break;
+                    case "turn":
+                        if (tokens[2].equals("bot")) {
+                            break;
+                        }
+                        if (tokens.length > 3) {
+                            writer.println("move ♠Z");  // invalid
+                            writer.println("move " + otherCard(tokens[3]));     // cannot play
+                            writer.println("move " + tokens[3].substring(0, 2));
+                        } else if (stage.equals("showTalon")) {
+                            writer.println("ok");
+                        } else if (stage.equals("selectWhistOption")) {
+                            writer.println("move Whist Standing");
+                        } else {
+                            writer.println("move Pass");
+                        }
+                        break;
+                    case "score":
+                        ++scores;
+                        break;
+                    case "error":
+                        ++errors;
+                        if (line.startsWith("error cannot play ")) {
+                            ++rejected;
+                        }
+                        break;
+                }
+            }
+            Assert.assertEquals(Config.NOP, scores);
+            Assert.assertTrue("rejected " + rejected, rejected >= 1);
+            writer.println("quit");
+        }
+        return errors;
+    }
+
+    // a card that is not in candidates
+    private String otherCard(String candidates) {
+        for (int i = 0; i < Integer.SIZE; ++i) {
+            String card = Card.get(1 << i).toString();
+            if (!candidates.contains(card)) {
+                return card;
+            }
+        }
+        throw new RuntimeException("no card");
+    }
+
+    @Test(timeout = 300000)
+    public void testRound() throws Exception {
+        int pauseBetweenTricks = config.pauseBetweenTricks.get();
+        int pauseBetweenMoves = config.pauseBetweenMoves.get();
+        int pauseBetweenRounds = config.pauseBetweenRounds.get();
+        config.pauseBetweenTricks.set(0);
+        config.pauseBetweenMoves.set(0);
+        config.pauseBetweenRounds.set(0);
+        GameServer gameServer = new GameServer(config, 0);
+        try {
+            gameServer.start();
+            Logger.printf("%s threads\n", gameServer.isVirtual() ? "virtual" : "platform");
+            int errors = playRound(gameServer.getPort());
+            Assert.assertTrue("errors " + errors, errors >= 1);
+            while (gameServer.getTableCount() > 0) {
+                Thread.sleep(10);
+            }
+        } finally {
+            gameServer.stop();
+            config.pauseBetweenTricks.set(pauseBetweenTricks);
+            config.pauseBetweenMoves.set(pauseBetweenMoves);
+            config.pauseBetweenRounds.set(pauseBetweenRounds);
+        }
+    }
+
+    @Test
+    public void testToQueueable() {
+        Assert.assertEquals(Config.Bid.BID_PASS, GameServer.toQueueable("Pass"));
+        Assert.assertEquals(Config.Bid.BID_WHIST_LAYING, GameServer.toQueueable("Whist Lying"));
+        Assert.assertEquals("♠A", GameServer.toQueueable("♠A").toString());
+        Assert.assertNull(GameServer.toQueueable("♠Z"));
+        Assert.assertNull(GameServer.toQueueable("bid"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.Card;
+import com.ab.jpref.cards.CardList;
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.Logger;
+import com.ab.util.Util;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+
+public class TestMonteCarlo {
+    public static final int NOP = Config.NOP;
+    static final Config config = Config.getInstance();
+    static final Util util = Util.getInstance();
+
+    // declarer, left and right hands
+    static final String[] sources = {
+        "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q",
+        "♠79 ♥XJ  ♠JQ ♦A ♥K  ♠K ♦K ♥QA",
+    };
+
+    @BeforeClass
+    public static void init() {
+        new GameManager(config, null);  // for Trick
+    }
+
+    private CardSet[] toHands(String source) {
+        CardList cards = util.toCardList(source);
+        int size = cards.size() / NOP;
+        CardSet[] hands = new CardSet[NOP];
+        for (int j = 0; j < NOP; ++j) {
+            int k = j * size;
+            hands[j] = new CardSet(cards.subList(k, k + size));
+        }
+        return hands;
+    }
+
+    private Trick toTrick(Bid bid, int startedBy, int size) {
+        Trick trick = new Trick();
+        trick.clear(startedBy);
+        trick.setBid(bid);
+        trick.setNumber(ROUND_SIZE - size);
+        return trick;
+    }
+
+    // every card the other may have
+    private CardSet[] possible(CardSet[] hands, int me) {
+        CardSet[] res = new CardSet[NOP];
+        for (int i = 0; i < NOP; ++i) {
+            if (i == me) {
+                res[i] = new CardSet(hands[i]);
+            } else {
+                res[i] = CardSet.union(hands);
+                res[i].remove(hands[me]);
+            }
+        }
+        return res;
+    }
+
+    @Test
+    public void testSolveCards() {
+        DoubleDummySolver solver = new DoubleDummySolver(new TrickPool());
+        for (String source : sources) {
+            CardSet[] hands = toHands(source);
+            for (Bid bid : new Bid[] {Bid.BID_6S, Bid.BID_6N}) {
+                for (int leader = 0; leader < NOP; ++leader) {
+                    int expected = solver.solve(bid.getTrump(), leader, hands);
+                    Trick trick = toTrick(bid, leader, hands[0].size());
+                    int[] tricks = solver.solveCards(trick, hands[leader].toCardList(), hands);
+                    int best = tricks[0];
+                    for (int t : tricks) {
+                        best = leader == 0 ? Math.max(best, t) : Math.min(best, t);
+                    }
+                    Logger.printf("%s %s, leader %d: %d tricks\n", source, bid, leader, best);
+                    Assert.assertEquals(expected, best);
+                }
+            }
+        }
+    }
+
+    // the solves share positions and the endgame table, the tricks stay within the deal
+    @Test
+    public void testSolveCardsRange() {
+        DoubleDummySolver solver = new DoubleDummySolver(new TrickPool());
+        CardSet[] hands = toHands("♠8QA ♣79XJ ♥KA  ♠9XK ♦78XJK ♥J  ♠7J ♣A ♦9QA ♥79Q");
+        int size = hands[0].size();
+        for (Bid bid : new Bid[] {Bid.BID_6S, Bid.BID_6N}) {
+            for (int leader = 0; leader < NOP; ++leader) {
+                int tricks = solver.solve(bid.getTrump(), leader, hands);
+                Assert.assertTrue(tricks <= size);
+                Trick trick = toTrick(bid, leader, size);
+                for (int t : solver.solveCards(trick, hands[leader].toCardList(), hands)) {
+                    Assert.assertTrue(t <= size);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeal() {
+        CardSet[] hands = toHands(sources[0]);
+        int me = 1;
+        CardSet[] possible = possible(hands, me);
+        possible[2].remove(CardSet.getDeck(Card.Suit.HEART));   // showed void
+        int[] sizes = {hands[0].size(), hands[1].size(), hands[2].size()};
+        MonteCarlo monteCarlo = new MonteCarlo(toTrick(Bid.BID_6S, me, hands[me].size()), 0, me, possible, sizes);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int n = 0; n < 100; ++n) {
+            CardSet[] dealt = monteCarlo.deal(random);
+            Assert.assertEquals(hands[me], dealt[me]);
+            Assert.assertTrue(dealt[2].list(Card.Suit.HEART).isEmpty());
+            Assert.assertEquals(NOP * hands[0].size(), CardSet.union(dealt).size());
+        }
+    }
+
+    @Test
+    public void testOpeningLead() {
+        int samples = MonteCarlo.SAMPLES;
+        int timeLimit = MonteCarlo.TIME_LIMIT;
+        MonteCarlo.SAMPLES = 20;
+        MonteCarlo.TIME_LIMIT = 0;
+        try {
+            for (String source : sources) {
+                CardSet[] hands = toHands(source);
+                int[] sizes = {hands[0].size(), hands[1].size(), hands[2].size()};
+                for (int me = 0; me < NOP; ++me) {
+                    Trick trick = toTrick(Bid.BID_6S, me, hands[me].size());
+                    MonteCarlo monteCarlo = new MonteCarlo(trick, 0, me, possible(hands, me), sizes);
+                    long start = System.currentTimeMillis();
+                    Card card = monteCarlo.getCard();
+                    long duration = System.currentTimeMillis() - start;
+                    Assert.assertNotNull(card);
+                    Assert.assertTrue(hands[me].contains(card));
+                    Assert.assertEquals(MonteCarlo.SAMPLES, monteCarlo.getSamples());
+                    Logger.printf("%s, hand %d: %s, %d samples, duration %d msec\n",
+                        source, me, card, monteCarlo.getSamples(), duration);
+                }
+            }
+        } finally {
+            MonteCarlo.SAMPLES = samples;
+            MonteCarlo.TIME_LIMIT = timeLimit;
+        }
+    }
+
+    // the solves in progress stop too, a 10-card solve can take seconds
+    @Test
+    public void testTimeLimit() {
+        int samples = MonteCarlo.SAMPLES;
+        int timeLimit = MonteCarlo.TIME_LIMIT;
+        MonteCarlo.SAMPLES = Integer.MAX_VALUE;
+        MonteCarlo.TIME_LIMIT = 50;
+        try {
+            String source = "♠89XKA ♣7X ♦JK ♥X  ♠Q ♣89J ♦78X ♥JKA  ♠7J ♣QA ♦9QA ♥79Q";
+            CardSet[] hands = toHands(source);
+            int[] sizes = {hands[0].size(), hands[1].size(), hands[2].size()};
+            int me = 1;
+            Trick trick = toTrick(Bid.BID_6N, me, hands[me].size());
+            MonteCarlo monteCarlo = new MonteCarlo(trick, 0, me, possible(hands, me), sizes);
+            long start = System.currentTimeMillis();
+            Card card = monteCarlo.getCard();
+            long duration = System.currentTimeMillis() - start;
+            Logger.printf("%s, hand %d: %s, %d samples, duration %d msec\n",
+                source, me, card, monteCarlo.getSamples(), duration);
+            Assert.assertTrue(String.format("%d msec", duration), duration < MonteCarlo.TIME_LIMIT + 100);
+            // too few samples are not trusted
+            Assert.assertEquals(monteCarlo.getSamples() < MonteCarlo.MIN_SAMPLES, card == null);
+        } finally {
+            MonteCarlo.SAMPLES = samples;
+            MonteCarlo.TIME_LIMIT = timeLimit;
+        }
+    }
+
+    @Test
+    public void testFollow() {
+        CardSet[] hands = toHands(sources[0]);
+        Trick trick = toTrick(Bid.BID_6S, 2, hands[0].size());
+        trick.add(Card.fromName("♦9"));
+        hands[2].remove(Card.fromName("♦9"));
+        CardSet legal = MonteCarlo.legalCards(hands[0], trick);
+        Assert.assertEquals(hands[0].list(Card.Suit.DIAMOND), legal);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ab.jpref.engine;
+
+import com.ab.jpref.config.Config;
+import com.ab.util.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TestSelfPlay {
+    static final Config config = Config.getInstance();
+
+    private String[] run(int threads, int deals, long seed) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8.name());
+        Assert.assertEquals(deals, new SelfPlay(config, threads, out).run(deals, seed));
+        return bytes.toString(StandardCharsets.UTF_8.name()).split("\n");
+    }
+
+    // without the solver time and positions, they depend on the thread
+    private String[] rounds(String[] lines) {
+        String[] rounds = new String[lines.length - 1];
+        for (int i = 1; i < lines.length; ++i) {
+            String line = lines[i];
+            for (int j = 0; j < 2; ++j) {
+                line = line.substring(0, line.lastIndexOf(','));
+            }
+            rounds[i - 1] = line;
+        }
+        Arrays.sort(rounds);
+        return rounds;
+    }
+
+    @Test
+    public void testRandomDeals() throws Exception {
+        int deals = 4;
+        String[] lines = run(2, deals, 1);
+        Assert.assertEquals(SelfPlay.CSV_HEADER, lines[0]);
+        Assert.assertEquals(deals + 1, lines.length);
+        int columns = SelfPlay.CSV_HEADER.split(",").length;
+        for (String line : lines) {
+            Logger.println(line);
+            Assert.assertEquals(line, columns, line.split(",", -1).length);
+        }
+        // the same seed, the same rounds
+        Assert.assertArrayEquals(rounds(lines), rounds(run(1, deals, 1)));
+    }
+
+    @Test
+    public void testDealFile() throws IOException, InterruptedException {
+        String deals = "#fixedplay: hands, talon, elderhand -> bid, tricks\n" +
+            "deal: ♣89XA ♦XA ♥7JQK  ♠8XJK ♣7 ♦78QK ♥X  ♠79A ♣JQK ♦9 ♥89A  ♠Q ♦J  1 -> 6♥ 5\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8.name());
+        int rounds = new SelfPlay(config, 1, out).run(new ByteArrayInputStream(deals.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, rounds);
+        String[] lines = bytes.toString(StandardCharsets.UTF_8.name()).split("\n");
+        Logger.println(lines[1]);
+        Assert.assertTrue(lines[1], lines[1].startsWith("0,1,♣89XA ♦XA ♥7JQK,♠8XJK ♣7 ♦78QK ♥X,♠79A ♣JQK ♦9 ♥89A,♠Q ♦J,"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.ab.jpref.engine;
+
+import com.ab.jpref.cards.CardSet;
+import com.ab.jpref.config.Config;
+import com.ab.jpref.config.Config.Bid;
+import com.ab.util.Logger;
+import com.ab.util.Util;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static com.ab.jpref.config.Config.ROUND_SIZE;
+
+public class TestTalonEvaluator {
+    static final Config config = Config.getInstance();
+    static final Util util = Util.getInstance();
+
+    static final String[] sources = {
+        "♠89XKA ♣7X ♦JK ♥8",
+        "♠7 ♣8J ♦79Q ♥8XQK",
+    };
+
+    @BeforeClass
+    public static void init() {
+        new GameManager(config, null);  // for Trick
+    }
+
+    @Test
+    public void testDrops() {
+        for (String source : sources) {
+            CardSet hand = new CardSet(util.toCardList(source));
+            CardSet talon = new CardSet(hand.complement().toCardList().subList(0, 2));
+            CardSet cards = new CardSet(hand, talon);
+            for (int elderHand = 0; elderHand < Config.NOP; ++elderHand) {
+                CardSet drops = TalonEvaluator.getDrops(cards, elderHand);
+                Assert.assertEquals(2, drops.size());
+                CardSet rest = new CardSet(cards);
+                rest.remove(drops);
+                Assert.assertEquals(ROUND_SIZE, rest.size());
+            }
+        }
+    }
+
+    // every talon, the evaluation cut short is used with the same time limit only
+    @Test
+    public void testEvaluateAll() {
+        int timeLimit = TalonEvaluator.TIME_LIMIT;
+        TalonEvaluator.clearCache();
+        try {
+            CardSet hand = new CardSet(util.toCardList("♠QKA ♣KA ♦KA ♥QKA"));
+            TalonEvaluator.TIME_LIMIT = 100;
+            TalonEvaluator.Evaluation partial = TalonEvaluator.evaluate(hand, 0);
+            Assert.assertTrue(partial.getTalons() < 22 * 21 / 2);
+            if (partial.getDeals() > 0) {
+                Assert.assertSame(partial, TalonEvaluator.evaluate(hand, 0));
+            }
+
+            TalonEvaluator.TIME_LIMIT = 0;
+            long start = System.currentTimeMillis();
+            TalonEvaluator.Evaluation evaluation = TalonEvaluator.evaluate(hand, 0);
+            Logger.printf("%s: %s in %d msec\n", hand, evaluation, System.currentTimeMillis() - start);
+            Assert.assertNotSame(partial, evaluation);
+            Assert.assertEquals(22 * 21 / 2, evaluation.getTalons());
+            Assert.assertEquals(evaluation.getTalons() * TalonEvaluator.LAYOUTS, evaluation.getDeals());
+            validate(evaluation);
+            Assert.assertTrue(evaluation.getBid(TalonEvaluator.MAKE_PERCENT).goal() >= 9);
+            Assert.assertSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+            TalonEvaluator.TIME_LIMIT = 100;
+            Assert.assertSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+        } finally {
+            TalonEvaluator.TIME_LIMIT = timeLimit;
+        }
+    }
+
+    // the settings that change the result are in the cache key
+    @Test
+    public void testCacheKey() {
+        int timeLimit = TalonEvaluator.TIME_LIMIT;
+        int layouts = TalonEvaluator.LAYOUTS;
+        int minTrumps = TalonEvaluator.MIN_TRUMPS;
+        TalonEvaluator.TIME_LIMIT = 100;
+        TalonEvaluator.clearCache();
+        try {
+            CardSet hand = new CardSet(util.toCardList("♠QKA ♣KA ♦KA ♥QKA"));
+            TalonEvaluator.Evaluation evaluation = TalonEvaluator.evaluate(hand, 0);
+            TalonEvaluator.MIN_TRUMPS = minTrumps + 1;
+            Assert.assertNotSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+            TalonEvaluator.MIN_TRUMPS = minTrumps;
+            TalonEvaluator.LAYOUTS = layouts + 1;
+            Assert.assertNotSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+            TalonEvaluator.LAYOUTS = layouts;
+            if (evaluation.getDeals() > 0) {
+                Assert.assertSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+            }
+            Assert.assertNotSame(evaluation, TalonEvaluator.evaluate(hand, 1));
+        } finally {
+            TalonEvaluator.TIME_LIMIT = timeLimit;
+            TalonEvaluator.LAYOUTS = layouts;
+            TalonEvaluator.MIN_TRUMPS = minTrumps;
+        }
+    }
+
+    // the time may be over before any deal is solved
+    @Test
+    public void testEvaluate() {
+        int timeLimit = TalonEvaluator.TIME_LIMIT;
+        TalonEvaluator.TIME_LIMIT = 300;
+        TalonEvaluator.clearCache();
+        try {
+            for (String source : sources) {
+                CardSet hand = new CardSet(util.toCardList(source));
+                long start = System.currentTimeMillis();
+                TalonEvaluator.Evaluation evaluation = TalonEvaluator.evaluate(hand, 0);
+                Logger.printf("%s: %s in %d msec\n", hand, evaluation, System.currentTimeMillis() - start);
+                // the time may be over in the middle of a talon
+                Assert.assertTrue(evaluation.getTalons() * TalonEvaluator.LAYOUTS <= evaluation.getDeals());
+                Assert.assertTrue((evaluation.getTalons() + 1) * TalonEvaluator.LAYOUTS > evaluation.getDeals());
+                validate(evaluation);
+                if (evaluation.getDeals() > 0) {
+                    Assert.assertSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+                } else {
+                    // not cached, the next call samples again
+                    Assert.assertNotSame(evaluation, TalonEvaluator.evaluate(hand, 0));
+                }
+            }
+        } finally {
+            TalonEvaluator.TIME_LIMIT = timeLimit;
+        }
+    }
+
+    private void validate(TalonEvaluator.Evaluation evaluation) {
+        for (int contract = 0; contract < TalonEvaluator.CONTRACTS; ++contract) {
+            int sum = 0;
+            for (int tricks = 0; tricks <= ROUND_SIZE; ++tricks) {
+                sum += evaluation.counts[contract][tricks];
+            }
+            Assert.assertEquals(evaluation.getSolved(contract), sum);
+            Assert.assertTrue(sum <= evaluation.getDeals());
+            if (evaluation.getDeals() > 0) {
+                Assert.assertEquals((double) sum / evaluation.getDeals(), evaluation.probability(contract, 0), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testGetBid() {
+        TalonEvaluator.Evaluation evaluation = new TalonEvaluator.Evaluation(0);
+        Assert.assertEquals(Bid.BID_PASS, evaluation.getBid(TalonEvaluator.MAKE_PERCENT));
+        evaluation.deals = 4;
+        evaluation.counts[0][5] = 4;            // ♠: 5 tricks
+        evaluation.counts[4][6] = 1;            // no-trump: 6, 7, 7, 8 tricks
+        evaluation.counts[4][7] = 2;
+        evaluation.counts[4][8] = 1;
+        Assert.assertEquals(Bid.BID_6N, evaluation.getBid(100));
+        Assert.assertEquals(Bid.BID_7N, evaluation.getBid(75));
+        Assert.assertEquals(Bid.BID_8N, evaluation.getBid(25));
+    }
+}
@@ -6,8 +6,11 @@ import com.ab.jpref.cards.CardSet;
 import com.ab.jpref.config.Config;
 import com.ab.jpref.config.Config.Bid;
 import com.ab.jpref.trickpool.TrickPool;
+import com.ab.util.BidData;
 import com.ab.util.Logger;
 import com.ab.util.Util;
+
+import static com.ab.jpref.config.Config.ROUND_SIZE;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -69,4 +72,475 @@ public class TestTrickList {
             Logger.println("ok");
         }
     }
-}
\ No newline at end of file
+
+    private String bestPath() {
+        StringBuilder sb = new StringBuilder();
+        for (TrickList.TrickNode trickNode : trickList.bestNodes) {
+            if (trickNode.getNumber() < 0 || trickNode.size() == 0) {
+                continue;
+            }
+            sb.append(trickNode).append(" ");
+        }
+        return new String(sb);
+    }
+
+    @Test
+    public void testParallelBuild() {
+        String[] sources = {
+            "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q : 6♠",
+            "♦XA ♥7JQK  ♠K ♦78QK ♥X  ♠9 ♣K ♦9 ♥89A : 6♣",
+            "♠79 ♥XJ  ♠JQ ♦A ♥K  ♠K ♦K ♥QA : 6♥",
+        };
+
+        boolean parallelBuild = TrickList.PARALLEL_BUILD;
+        for (String source : sources) {
+            Logger.println(source);
+            String[] parts = source.split("\\s+(:|->)\\s+");
+            CardList cards = util.toCardList(parts[0]);
+            int size = cards.size() / NOP;
+            CardSet[] hands = new CardSet[NOP];
+            for (int j = 0; j < NOP; ++j) {
+                int k = j * size;
+                hands[j] = new CardSet(cards.subList(k, k + size));
+            }
+            Bid bid = Bid.fromName(parts[1]);
+            String[] paths = new String[2];
+            int[] estimates = new int[2];
+            for (int i = 0; i < 2; ++i) {
+                TrickList.PARALLEL_BUILD = i == 1;
+                Trick trick = new Trick();
+                trick.clear(0);
+                gameManager.minBid = bid;
+                gameManager.declarerNumber = 0;
+                gameManager.declarerHand = new CardSet(hands[0]);
+                trick.setBid(bid);
+                trick.setNumber(ROUND_SIZE - size);
+                trickList.getCard(new ForTricksBot(hands), trick);
+                paths[i] = bestPath();
+                estimates[i] = trickList.getEstimate();
+            }
+            Assert.assertEquals("estimate", estimates[0], estimates[1]);
+            Assert.assertEquals("best path", paths[0], paths[1]);
+        }
+        TrickList.PARALLEL_BUILD = parallelBuild;
+    }
+
+    @Test
+    public void testCanonicalPositions() {
+        compareModes(new boolean[][] {{false, false, false}, {true, false, false}});
+    }
+
+    @Test
+    public void testSuitSymmetry() {
+        compareModes(new boolean[][] {{true, false, false}, {true, true, false}});
+    }
+
+    @Test
+    public void testQuickTricks() {
+        compareModes(new boolean[][] {{true, true, false}, {true, true, true}});
+    }
+
+    // modes: CANONICAL_POSITIONS, SUIT_SYMMETRY, QUICK_TRICKS
+    // the same estimates and best paths for two modes, less positions for the 2nd one
+    private void compareModes(boolean[][] modes) {
+        String[] sources = {
+            "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q : 6♠",
+            "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q : 6" + Config.NO_TRUMP,
+            "♦XA ♥7JQK  ♠K ♦78QK ♥X  ♠9 ♣K ♦9 ♥89A : 6♣",
+            "♠79 ♥XJ  ♠JQ ♦A ♥K  ♠K ♦K ♥QA : 6♥",
+        };
+
+        boolean canonicalPositions = TrickList.CANONICAL_POSITIONS;
+        boolean suitSymmetry = TrickList.SUIT_SYMMETRY;
+        boolean quickTricks = TrickList.QUICK_TRICKS;
+        for (String source : sources) {
+            Logger.println(source);
+            String[] parts = source.split("\\s+(:|->)\\s+");
+            CardList cards = util.toCardList(parts[0]);
+            int size = cards.size() / NOP;
+            CardSet[] hands = new CardSet[NOP];
+            for (int j = 0; j < NOP; ++j) {
+                int k = j * size;
+                hands[j] = new CardSet(cards.subList(k, k + size));
+            }
+            Bid bid = Bid.fromName(parts[1]);
+            String[] paths = new String[2];
+            int[] estimates = new int[2];
+            long[] positions = new long[2];
+            for (int i = 0; i < 2; ++i) {
+                TrickList.CANONICAL_POSITIONS = modes[i][0];
+                TrickList.SUIT_SYMMETRY = modes[i][1];
+                TrickList.QUICK_TRICKS = modes[i][2];
+                TrickList.maxPositions.reset();
+                trickList = new TrickList(new TrickPool());
+                Trick trick = new Trick();
+                trick.clear(0);
+                gameManager.minBid = bid;
+                gameManager.declarerNumber = 0;
+                gameManager.declarerHand = new CardSet(hands[0]);
+                trick.setBid(bid);
+                trick.setNumber(ROUND_SIZE - size);
+                trickList.getCard(new ForTricksBot(hands), trick);
+                paths[i] = bestPath();
+                estimates[i] = trickList.getEstimate();
+                positions[i] = TrickList.maxPositions.get();
+            }
+            Logger.printf("positions %,d -> %,d\n", positions[0], positions[1]);
+            Assert.assertEquals("estimate", estimates[0], estimates[1]);
+            Assert.assertEquals("best path", paths[0], paths[1]);
+            Assert.assertTrue(positions[1] <= positions[0]);
+        }
+        TrickList.CANONICAL_POSITIONS = canonicalPositions;
+        TrickList.SUIT_SYMMETRY = suitSymmetry;
+        TrickList.QUICK_TRICKS = quickTricks;
+    }
+
+    // the same estimates and best paths without endgame table, with empty one and with the positions
+    // from the previous build
+    @Test
+    public void testEndgameTable() {
+        String[] sources = {
+            "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q : 6♠",
+            "♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q : 6" + Config.NO_TRUMP,
+            "♦XA ♥7JQK  ♠K ♦78QK ♥X  ♠9 ♣K ♦9 ♥89A : 6♣",
+            "♠79 ♥XJ  ♠JQ ♦A ♥K  ♠K ♦K ♥QA : 6♥",
+        };
+
+        int endgameTricks = TrickList.ENDGAME_TRICKS;
+        try {
+            for (String source : sources) {
+                Logger.println(source);
+                String[] parts = source.split("\\s+(:|->)\\s+");
+                CardList cards = util.toCardList(parts[0]);
+                int size = cards.size() / NOP;
+                CardSet[] hands = new CardSet[NOP];
+                for (int j = 0; j < NOP; ++j) {
+                    int k = j * size;
+                    hands[j] = new CardSet(cards.subList(k, k + size));
+                }
+                Bid bid = Bid.fromName(parts[1]);
+                String[] paths = new String[3];
+                int[] estimates = new int[3];
+                int[] hits = new int[3];
+                TrickList.clearEndgameTable();
+                for (int i = 0; i < 3; ++i) {
+                    TrickList.ENDGAME_TRICKS = i == 0 ? 0 : 4;
+                    trickList = new TrickList(new TrickPool());
+                    Trick trick = new Trick();
+                    trick.clear(0);
+                    gameManager.minBid = bid;
+                    gameManager.declarerNumber = 0;
+                    gameManager.declarerHand = new CardSet(hands[0]);
+                    trick.setBid(bid);
+                    trick.setNumber(ROUND_SIZE - size);
+                    trickList.getCard(new ForTricksBot(hands), trick);
+                    paths[i] = bestPath();
+                    estimates[i] = trickList.getEstimate();
+                    hits[i] = trickList.endgame;
+                }
+                Logger.printf("endgame hits %,d -> %,d -> %,d\n", hits[0], hits[1], hits[2]);
+                Assert.assertEquals("estimate", estimates[0], estimates[1]);
+                Assert.assertEquals("estimate", estimates[0], estimates[2]);
+                Assert.assertEquals("best path", paths[0], paths[1]);
+                Assert.assertEquals("best path", paths[0], paths[2]);
+                Assert.assertEquals(0, hits[0]);
+                Assert.assertTrue(hits[2] > 0);
+            }
+        } finally {
+            TrickList.ENDGAME_TRICKS = endgameTricks;
+        }
+    }
+
+    @Test
+    public void testTrickPool() {
+        TrickPool trickPool = new TrickPool();
+        Assert.assertEquals(0, trickPool.capacity());
+        for (int i = 1; i <= TrickPool.SEGMENT_SIZE + 1; ++i) {
+            Assert.assertEquals(i, trickPool.alloc(i));
+        }
+        Assert.assertEquals(2 * TrickPool.SEGMENT_SIZE, trickPool.capacity());
+        Assert.assertEquals(TrickPool.SEGMENT_SIZE, trickPool.get(TrickPool.SEGMENT_SIZE));
+        trickPool.set(TrickPool.SEGMENT_SIZE + 1, 5);
+        Assert.assertEquals(5, trickPool.get(TrickPool.SEGMENT_SIZE + 1));
+        trickPool.clear();
+        Assert.assertEquals(0, trickPool.size());
+        Assert.assertEquals(TrickPool.SEGMENT_SIZE + 1, trickPool.highWaterMark());
+        // segments are reused
+        trickPool.alloc(1);
+        Assert.assertEquals(2 * TrickPool.SEGMENT_SIZE, trickPool.capacity());
+
+        // pool overflow must not break the game
+        CardList cards = util.toCardList("♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q");
+        CardSet[] hands = new CardSet[NOP];
+        for (int j = 0; j < NOP; ++j) {
+            hands[j] = new CardSet(cards.subList(j * 9, j * 9 + 9));
+        }
+        TrickList smallTrickList = new TrickList(new TrickPool(1000));
+        Bid bid = Bid.BID_6S;
+        Trick trick = new Trick();
+        trick.clear(0);
+        gameManager.minBid = bid;
+        gameManager.declarerNumber = 0;
+        gameManager.declarerHand = new CardSet(hands[0]);
+        trick.setBid(bid);
+        trick.setNumber(1);
+        Assert.assertNull(smallTrickList.getCard(new ForTricksBot(hands), trick));
+    }
+
+    @Test
+    public void testRebuild() {
+        CardList cards = util.toCardList("♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q");
+        CardSet[] hands = new CardSet[NOP];
+        for (int j = 0; j < NOP; ++j) {
+            hands[j] = new CardSet(cards.subList(j * 9, j * 9 + 9));
+        }
+        Bid bid = Bid.BID_6S;
+        gameManager.minBid = bid;
+        gameManager.declarerNumber = 0;
+        gameManager.declarerHand = new CardSet(hands[0]);
+        EngineContext.getDefault().playerBid = new BidData.PlayerBid(bid);
+        Trick trick = new Trick();
+        trick.clear(0);
+        trick.setBid(bid);
+        trick.setNumber(1);
+        ForTricksBot forTricksBot = new ForTricksBot(hands);
+        Card best = trickList.getCard(forTricksBot, trick);
+        long positions = TrickList.maxPositions.get();
+
+        // declarer plays another card
+        Card card = hands[0].first();
+        Assert.assertFalse(card.equals(best));
+        trick.add(card);
+        forTricksBot.myHand.remove(card);
+        gameManager.declarerHand.remove(card);
+        long start = System.currentTimeMillis();
+        Card card1 = trickList.getCard(forTricksBot, trick);
+        long reusedTime = System.currentTimeMillis() - start;
+        String reusedPath = bestPath();
+        int reusedEstimate = trickList.getEstimate();
+
+        // the same from scratch
+        TrickList newTrickList = new TrickList(new TrickPool());
+        ForTricksBot newBot = new ForTricksBot(forTricksBot.myHand, forTricksBot.leftHand, forTricksBot.rightHand);
+        start = System.currentTimeMillis();
+        Card card2 = newTrickList.getCard(newBot, trick);
+        long newTime = System.currentTimeMillis() - start;
+        Logger.printf("rebuild %d msec, from scratch %d msec, first build positions %,d\n",
+            reusedTime, newTime, positions);
+        Assert.assertEquals(card2, card1);
+        Assert.assertEquals(reusedEstimate, newTrickList.getEstimate());
+        Assert.assertEquals(reusedPath, bestPath());
+    }
+
+    @Test
+    public void testTimeLimit() {
+        CardList cards = util.toCardList("♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q");
+        Bid bid = Bid.BID_6S;
+        int timeLimit = config.moveTimeLimit.get();
+        try {
+            // enough time, the same as without the limit
+            int[] timeLimits = {0, 60000};
+            String[] paths = new String[timeLimits.length];
+            int[] estimates = new int[timeLimits.length];
+            for (int i = 0; i < timeLimits.length; ++i) {
+                config.moveTimeLimit.set(timeLimits[i]);
+                trickList = new TrickList(new TrickPool());
+                ForTricksBot forTricksBot = new ForTricksBot(toHands(cards));
+                Trick trick = startTrick(bid, forTricksBot.myHand);
+                trickList.getCard(forTricksBot, trick);
+                paths[i] = bestPath();
+                estimates[i] = trickList.getEstimate();
+            }
+            Assert.assertEquals("estimate", estimates[0], estimates[1]);
+            Assert.assertEquals("best path", paths[0], paths[1]);
+
+            // the list is built to a few tricks only and rebuilt when they are played
+            config.moveTimeLimit.set(1);
+            trickList = new TrickList(new TrickPool());
+            ForTricksBot forTricksBot = new ForTricksBot(toHands(cards));
+            CardSet[] hands = {forTricksBot.myHand, forTricksBot.leftHand, forTricksBot.rightHand};
+            Trick trick = startTrick(bid, forTricksBot.myHand);
+            for (int n = trick.getNumber(); n < ROUND_SIZE; ++n) {
+                for (int i = 0; i < NOP; ++i) {
+                    Card card = trickList.getCard(forTricksBot, trick);
+                    int turn = trick.getTurn();
+                    Assert.assertTrue(String.format("trick %d, %s", n, card), hands[turn].contains(card));
+                    trick.add(card);
+                    hands[turn].remove(card);
+                    if (turn == 0) {
+                        gameManager.declarerHand.remove(card);
+                    }
+                }
+                trick.clear();
+            }
+            Assert.assertTrue(hands[0].isEmpty());
+        } finally {
+            config.moveTimeLimit.set(timeLimit);
+        }
+    }
+
+    @Test
+    public void testCancel() {
+        CardList cards = util.toCardList("♠89XKA ♣7X ♦JK  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q");
+        Bid bid = Bid.BID_6S;
+        final CancellationToken cancellationToken = new CancellationToken();
+        final int[] calls = new int[2];
+        trickList.setCancellationToken(cancellationToken);
+        trickList.setProgressListener(new TrickList.ProgressListener() {
+            @Override
+            public void onProgress(int positions, int poolSize, long elapsed) {
+                ++calls[0];
+                cancellationToken.cancel(GameManager.RestartCommand.newRound.name());
+            }
+
+            @Override
+            public void onDone() {
+                ++calls[1];
+            }
+        });
+        int progressPeriod = TrickList.PROGRESS_PERIOD;
+        TrickList.PROGRESS_PERIOD = 0;
+        try {
+            ForTricksBot forTricksBot = new ForTricksBot(toHands(cards));
+            trickList.getCard(forTricksBot, startTrick(bid, forTricksBot.myHand));
+            Assert.fail("build is not cancelled");
+        } catch (Player.PrefExceptionRerun e) {
+            Assert.assertEquals(GameManager.RestartCommand.newRound.name(), e.getMessage());
+        } finally {
+            TrickList.PROGRESS_PERIOD = progressPeriod;
+        }
+        Assert.assertTrue(calls[0] > 0);
+        Assert.assertEquals(1, calls[1]);
+
+        // next round
+        trickList.setCancellationToken(new CancellationToken());
+        trickList.initBuild();
+        ForTricksBot forTricksBot = new ForTricksBot(toHands(cards));
+        Card card = trickList.getCard(forTricksBot, startTrick(bid, forTricksBot.myHand));
+        Assert.assertTrue(forTricksBot.myHand.contains(card));
+        Assert.assertEquals(2, calls[1]);
+    }
+
+    @Test
+    public void testPondering() {
+        CardList cards = util.toCardList("♠89XKA ♣7X ♦JK ♥X  ♠Q ♣89J ♦78X ♥JKA  ♠7J ♣QA ♦9QA ♥79Q");
+        Bid bid = Bid.BID_6S;
+        int timeLimit = config.moveTimeLimit.get();
+        Card card;
+        int estimate;
+        ForTricksBot forTricksBot = new ForTricksBot(toHands(cards));
+        CardSet[] hands = {forTricksBot.myHand, forTricksBot.leftHand, forTricksBot.rightHand};
+        Trick trick = startTrick(bid, forTricksBot.myHand);
+        try {
+            // the lists are built to a few tricks only
+            config.moveTimeLimit.set(1);
+            // declarer and the 1st defender play as the list expects
+            for (int i = 0; i < 2; ++i) {
+                play(trick, hands, trickList.getCard(forTricksBot, trick));
+            }
+            // the 2nd defender is human
+            Card expected = trickList.getCard(forTricksBot, trick);
+            CardSet candidates = hands[2].list(trick.getStartingSuit());
+            if (candidates.isEmpty()) {
+                candidates = hands[2].list(bid.getTrump());
+            }
+            if (candidates.isEmpty()) {
+                candidates = new CardSet(hands[2]);
+            }
+            Card unexpected = candidates.first();
+            if (unexpected.equals(expected)) {
+                unexpected = candidates.last();
+            }
+            Assert.assertFalse(unexpected.equals(expected));
+
+            long start = System.currentTimeMillis();
+            trickList.ponder(trick, candidates);
+            trickList.waitPondering();
+            long ponderTime = System.currentTimeMillis() - start;
+            play(trick, hands, unexpected);
+            trick.clear();
+            start = System.currentTimeMillis();
+            card = trickList.getCard(forTricksBot, trick);
+            estimate = trickList.getEstimate();
+            Logger.printf("pondering %s: %d msec, rebuild after %s: %d msec\n",
+                candidates, ponderTime, unexpected, System.currentTimeMillis() - start);
+        } finally {
+            config.moveTimeLimit.set(0);
+        }
+
+        // the pondered list is complete, the same as from scratch without time limit
+        try {
+            TrickList newTrickList = new TrickList(new TrickPool());
+            ForTricksBot newBot = new ForTricksBot(hands[0], hands[1], hands[2]);
+            Assert.assertEquals(card, newTrickList.getCard(newBot, trick));
+            Assert.assertEquals(estimate, newTrickList.getEstimate());
+        } finally {
+            config.moveTimeLimit.set(timeLimit);
+        }
+    }
+
+    private void play(Trick trick, CardSet[] hands, Card card) {
+        int turn = trick.getTurn();
+        Assert.assertTrue(card.toString(), hands[turn].contains(card));
+        trick.add(card);
+        hands[turn].remove(card);
+        if (turn == 0) {
+            gameManager.declarerHand.remove(card);
+        }
+    }
+
+    private CardSet[] toHands(CardList cards) {
+        int size = cards.size() / NOP;
+        CardSet[] hands = new CardSet[NOP];
+        for (int j = 0; j < NOP; ++j) {
+            hands[j] = new CardSet(cards.subList(j * size, j * size + size));
+        }
+        return hands;
+    }
+
+    private Trick startTrick(Bid bid, CardSet declarerHand) {
+        gameManager.minBid = bid;
+        gameManager.declarerNumber = 0;
+        gameManager.declarerHand = new CardSet(declarerHand);
+        EngineContext.getDefault().playerBid = new BidData.PlayerBid(bid);
+        Trick trick = new Trick();
+        trick.clear(0);
+        trick.setBid(bid);
+        trick.setNumber(ROUND_SIZE - declarerHand.size());
+        return trick;
+    }
+
+    @Test
+    public void testParallelProbes() {
+        // declarer's hand with talon, defenders do not know the drops
+        CardList cards = util.toCardList("♠89XKA ♣78X ♦JK ♥X  ♠Q ♣9J ♦78X ♥JKA  ♠7J ♣A ♦9QA ♥79Q");
+        CardSet[] hands = new CardSet[NOP];
+        hands[0] = new CardSet(cards.subList(0, 11));
+        hands[1] = new CardSet(cards.subList(11, 20));
+        hands[2] = new CardSet(cards.subList(20, 29));
+        Bid bid = Bid.BID_6S;
+        boolean parallelBuild = TrickList.PARALLEL_BUILD;
+        String[] drops = new String[2];
+        String[] paths = new String[2];
+        for (int i = 0; i < 2; ++i) {
+            TrickList.PARALLEL_BUILD = i == 1;
+            trickList = new TrickList(new TrickPool());
+            Trick trick = new Trick();
+            trick.clear(1);
+            trick.setBid(bid);
+            trick.setNumber(1);
+            gameManager.minBid = bid;
+            gameManager.declarerNumber = 0;
+            gameManager.declarerHand = new CardSet(hands[0]);
+            gameManager.initialDeclarerHand = new CardSet(hands[0]);
+            EngineContext.getDefault().playerBid = new BidData.PlayerBid(bid);
+            ForTricksBot forTricksBot = new ForTricksBot(hands);
+            trickList.getCard(forTricksBot, trick);
+            drops[i] = EngineContext.getDefault().playerBid.drops.toString();
+            paths[i] = bestPath();
+        }
+        TrickList.PARALLEL_BUILD = parallelBuild;
+        Assert.assertEquals("drops", drops[0], drops[1]);
+        Assert.assertEquals("best path", paths[0], paths[1]);
+    }
+}
@@ -1,10 +1,16 @@
 package com.ab.util;
 
+import com.ab.jpref.cards.Card;
 import com.ab.jpref.cards.CardSet;
 import com.ab.jpref.config.Config.Bid;
+import com.sun.management.ThreadMXBean;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
 public class TestBidData {
     private final Util util = Util.getInstance();
 
@@ -77,4 +83,82 @@ public class TestBidData {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testHandPattern() {
+        String[] sources = {
+            // hand -> suits with their patterns in descending order
+            "♠A ♣QK ♦89XJA ♥8XJK -> ♦5E ♥4DBA ♣2DC ♠1E",
+            // equal patterns by the cards, then by suit
+            "♠89 ♣89 ♦78 ♥A -> ♠2 ♣2 ♦2 ♥1E",
+            "♠79XJQA ♦8XJKA -> ♠6E ♦5ED",
+        };
+        BidData bidData = BidData.getInstance();
+        for (String source : sources) {
+            String[] parts = source.split(" -> ");
+            CardSet hand = new CardSet(util.toCardList(parts[0]));
+            long handPattern = bidData.toHandPattern(hand.getBitmap());
+            String[] expected = parts[1].split(" ");
+            Assert.assertEquals(source, expected.length, BidData.suitCount(handPattern));
+            for (int i = 0; i < expected.length; ++i) {
+                Card.Suit suit = Card.Suit.fromCode(expected[i].charAt(0));
+                Assert.assertEquals(source, suit, BidData.getSuit(handPattern, i));
+                Assert.assertEquals(source, expected[i].substring(1), bidData.getPattern(handPattern, i));
+            }
+        }
+    }
+
+    @Test
+    public void testHandPatternAllocations() {
+        ThreadMXBean threadMXBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        long threadId = Thread.currentThread().getId();
+        BidData bidData = BidData.getInstance();
+        long res = bidData.toHandPattern(0x12345678);   // warm up
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int bitmap = 0x01010101; bitmap < 0x01010101 + 100000; bitmap += 7) {
+            res += bidData.toHandPattern(bitmap);
+        }
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+        Logger.printf("%,d bytes, %x\n", bytes, res);
+        Assert.assertTrue(String.format("%,d bytes", bytes), bytes < 1024);
+    }
+
+    @Test
+    public void testBidCache() {
+        BidData bidData = BidData.getInstance();
+        Random random = new Random(1);
+        Bid[] minBids = {Bid.BID_6S, Bid.BID_7S, Bid.BID_7N};
+        boolean cacheBids = BidData.CACHE_BIDS;
+        try {
+            for (int n = 0; n < 2000; ++n) {
+                // 12 random cards out of 32
+                int bitmap = 0;
+                while (Integer.bitCount(bitmap) < 12) {
+                    bitmap |= 1 << random.nextInt(32);
+                }
+                for (int nDrops = 1; nDrops <= 2; ++nDrops) {
+                    CardSet hand = new CardSet(bitmap);
+                    if (nDrops == 1) {
+                        hand.remove(hand.first());
+                    }
+                    Bid minBid = minBids[n % minBids.length];
+                    int elderHand = n % 3;
+                    BidData.CACHE_BIDS = false;
+                    BidData.PlayerBid expected = bidData.getBid(hand, minBid, elderHand, nDrops);
+                    BidData.CACHE_BIDS = true;
+                    for (int i = 0; i < 2; ++i) {
+                        BidData.PlayerBid playerBid = bidData.getBid(hand, minBid, elderHand, nDrops);
+                        Assert.assertEquals(hand.toString(), expected.value, playerBid.value);
+                        Assert.assertEquals(hand.toString(), expected.drops, playerBid.drops);
+                        // callers modify the drops, the cached value stays the same
+                        playerBid.drops.clear();
+                    }
+                }
+            }
+        } finally {
+            BidData.CACHE_BIDS = cacheBids;
+        }
+        Logger.println("bid cache: " + bidData.getBidCache());
+        Assert.assertTrue(bidData.getBidCache().getHits() > 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ab.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestClockCache {
+
+    @Test
+    public void testPutGet() {
+        ClockCache cache = new ClockCache(1000);
+        Assert.assertEquals(1024, cache.capacity());
+        for (long key = 0; key < 500; ++key) {
+            cache.put(key << 32 | key, key * 3);
+        }
+        Assert.assertEquals(500, cache.size());
+        for (long key = 0; key < 500; ++key) {
+            Assert.assertEquals(key * 3, cache.get(key << 32 | key));
+        }
+        Assert.assertEquals(ClockCache.NULL_VALUE, cache.get(-1));
+        Assert.assertEquals(500, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        cache.put(0, 7);
+        Assert.assertEquals(7, cache.get(0));
+        Assert.assertEquals(500, cache.size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(ClockCache.NULL_VALUE, cache.get(1L << 32 | 1));
+    }
+
+    @Test
+    public void testEviction() {
+        ClockCache cache = new ClockCache(256);
+        for (int i = 1; i <= 1000; ++i) {
+            cache.put(i, i);
+            // the 1st keys are used all the time and survive
+            for (int j = 1; j <= 8 && j < i; ++j) {
+                Assert.assertEquals(j, cache.get(j));
+            }
+        }
+        Assert.assertEquals(256, cache.size());
+        Assert.assertEquals(1000 - 256, cache.getEvicted());
+        int found = 0;
+        for (int i = 1; i <= 1000; ++i) {
+            long value = cache.get(i);
+            if (value != ClockCache.NULL_VALUE) {
+                Assert.assertEquals(i, value);
+                ++found;
+            }
+        }
+        Assert.assertEquals(256, found);
+        // the latest key is there
+        Assert.assertEquals(1000, cache.get(1000));
+    }
+
+    // the new key takes the entry of the evicted one
+    @Test
+    public void testIndex() {
+        ClockCache cache = new ClockCache(16);
+        int[] index = new int[17];
+        for (int i = 0; i < 16; ++i) {
+            index[i] = cache.put(i, i);
+            Assert.assertEquals(index[i], cache.getIndex(i));
+        }
+        Assert.assertEquals(ClockCache.NULL_INDEX, cache.getIndex(16));
+        Assert.assertEquals(index[3], cache.put(3, 33));
+        index[16] = cache.put(16, 16);
+        Assert.assertTrue(index[16] >= 0 && index[16] < cache.capacity());
+        int evicted = 0;
+        for (int i = 0; i < 16; ++i) {
+            if (cache.get(i) == ClockCache.NULL_VALUE) {
+                Assert.assertEquals(index[i], index[16]);
+                ++evicted;
+            } else {
+                Assert.assertEquals(index[i], cache.getIndex(i));
+            }
+        }
+        Assert.assertEquals(1, evicted);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidValue() {
+        new ClockCache(16).put(1, ClockCache.NULL_VALUE);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ab.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestConcurrentLongIntCache {
+
+    @Test
+    public void testPutGet() {
+        ConcurrentLongIntCache cache = new ConcurrentLongIntCache(1000, 3);
+        Assert.assertEquals(1024, cache.capacity());
+        Random random = new Random(1);
+        long[] keys = new long[400];
+        for (int i = 0; i < keys.length; ++i) {
+            // endgame key: trump, top, owners, cards
+            keys[i] = ((long)random.nextInt(5) << 58) | ((long)random.nextInt(3) << 56) |
+                ((long)random.nextInt(1 << 24) << 32) | (random.nextInt() & 0x0ffffffffL) | 1;
+            cache.put(keys[i], i % 7 + 1);
+        }
+        int found = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            int value = cache.get(keys[i]);
+            Assert.assertTrue(value == 0 || value == i % 7 + 1);
+            if (value != 0) {
+                ++found;
+            }
+        }
+        Assert.assertEquals(keys.length - cache.getReplaced(), found);
+        Assert.assertEquals(0, cache.get(0x300000001L));
+        // the existing value is not replaced
+        cache.put(keys[0], 7);
+        Assert.assertEquals(1, cache.get(keys[0]));
+    }
+
+    @Test
+    public void testInvalid() {
+        ConcurrentLongIntCache cache = new ConcurrentLongIntCache(16, 3);
+        long[] keys = {0, -1, 1L << 61};
+        for (long key : keys) {
+            try {
+                cache.put(key, 1);
+                Assert.fail(String.format("key 0x%x", key));
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+        int[] values = {0, 8};
+        for (int value : values) {
+            try {
+                cache.put(1, value);
+                Assert.fail(String.format("value %d", value));
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+        cache.put((1L << 61) - 1, 7);
+        Assert.assertEquals(7, cache.get((1L << 61) - 1));
+    }
+
+    @Test
+    public void testOverflow() {
+        // more keys than slots, the new keys replace the old ones, the cache is never full
+        ConcurrentLongIntCache cache = new ConcurrentLongIntCache(256, 3);
+        for (int i = 1; i <= 1000; ++i) {
+            cache.put(i, i % 7 + 1);
+            Assert.assertEquals(i % 7 + 1, cache.get(i));
+        }
+        Assert.assertTrue(cache.size() <= 256);
+        Assert.assertEquals(1000, cache.size() + cache.getReplaced());
+        for (int i = 1; i <= 1000; ++i) {
+            int value = cache.get(i);
+            Assert.assertTrue(value == 0 || value == i % 7 + 1);
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        // small, so that the threads replace each other's entries
+        final ConcurrentLongIntCache cache = new ConcurrentLongIntCache(1 << 12, 3);
+        final int threads = 4;
+        final int count = 100000;
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            final int start = t * count / 2;    // the ranges overlap
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = start + 1; i <= start + count; ++i) {
+                        cache.put(i, i % 7 + 1);
+                        for (int j = i; j > start && j > i - 16; --j) {
+                            int value = cache.get(j);
+                            Assert.assertTrue(value == 0 || value == j % 7 + 1);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals(cache.capacity(), cache.size());
+    }
+}
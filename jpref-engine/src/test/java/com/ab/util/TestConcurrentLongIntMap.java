@@ -0,0 +1,80 @@
+package com.ab.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestConcurrentLongIntMap {
+
+    @Test
+    public void testPutGet() {
+        ConcurrentLongIntMap map = new ConcurrentLongIntMap(1000);
+        Assert.assertEquals(1024, map.capacity());
+        Random random = new Random(1);
+        long[] keys = new long[400];
+        for (int i = 0; i < keys.length; ++i) {
+            // hands bitmap + top
+            keys[i] = ((long)random.nextInt(3) << 32) | (random.nextInt() & 0x0ffffffffL) | 1;
+            map.put(keys[i], i + 1);
+        }
+        for (int i = 0; i < keys.length; ++i) {
+            Assert.assertTrue(map.get(keys[i]) > 0);
+        }
+        Assert.assertEquals(0, map.get(0x300000001L));
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertEquals(0, map.get(keys[0]));
+    }
+
+    @Test
+    public void testOverflow() {
+        // more keys than slots, the map drops them but never fails
+        ConcurrentLongIntMap map = new ConcurrentLongIntMap(256);
+        for (int i = 1; i <= 1000; ++i) {
+            map.put(i, i);
+        }
+        Assert.assertEquals(256, map.size());
+        Assert.assertEquals(1000 - 256, map.getDropped());
+        for (int i = 1; i <= 1000; ++i) {
+            int value = map.get(i);
+            Assert.assertTrue(value == 0 || value == i);
+        }
+        map.clear();
+        Assert.assertEquals(512, map.capacity());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final ConcurrentLongIntMap map = new ConcurrentLongIntMap();
+        final int threads = 4;
+        final int count = 100000;
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            final int start = t * count / 2;    // the ranges overlap
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = start + 1; i <= start + count; ++i) {
+                        map.put(i, i);
+                        int value = map.get(i);
+                        Assert.assertEquals(i, value);
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals((threads + 1) * count / 2, map.size());
+    }
+}
@@ -189,6 +189,7 @@ public class Main implements Logger.LogHolder, Host {
         mainPanel = new MainPanel(this);
         mainContainer.add(mainPanel);
         tableLayout = new TableLayout<>(this, mainPanel);
+        trickList.setProgressListener(tableLayout);
         gameManager = new GameManager(PConfig.getInstance(), tableLayout);
     }
 
@@ -70,6 +70,7 @@ public class MainPanel extends JLayeredPane implements TableLayout.GUI<Graphics>
     int panelWidth = -1, panelHeight = -1;
 
     final List<Pair<Widget, JComponent>> widgets = new ArrayList<>();
+    final JLabel progressLabel = new JLabel();
 
     @SuppressWarnings("unchecked")
     private TableLayout<Graphics> tableLayout() {
@@ -81,6 +82,10 @@ public class MainPanel extends JLayeredPane implements TableLayout.GUI<Graphics>
         this.setLayout(null);
         this.setOpaque(false);
         loadImages();
+        progressLabel.setOpaque(true);
+        progressLabel.setBackground(LBL_BG_COLOR);
+        progressLabel.setVisible(false);
+        this.add(progressLabel, 0);
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -234,6 +239,21 @@ public class MainPanel extends JLayeredPane implements TableLayout.GUI<Graphics>
         }
     }
 
+    @Override
+    public void showProgress(String text) {
+        SwingUtilities.invokeLater(() -> {
+            if (text == null) {
+                progressLabel.setVisible(false);
+                return;
+            }
+            progressLabel.setFont(new Font("Serif", Font.PLAIN, (int)(metrics.cardW * .3)));
+            progressLabel.setText(text);
+            Dimension d = progressLabel.getPreferredSize();
+            progressLabel.setBounds(0, 0, d.width, d.height);
+            progressLabel.setVisible(true);
+        });
+    }
+
     @Override
     public void showMessage(String text) {
         JDialog dialog = new JDialog(Main.mainFrame, m("Message"), true);
@@ -215,7 +215,7 @@ public class TestPosition implements Host {
                         hands[0] = forTricksBot.getMyHand();
                     }
                     trick.setNumber(ROUND_SIZE - hands[1].size());
-                    Bot.targetBot = forTricksBot;
+                    EngineContext.getDefault().setTargetBot(forTricksBot);
                     forTricksBot.play(trick);
 
                     if (bid.equals(Bid.BID_MISERE)) {